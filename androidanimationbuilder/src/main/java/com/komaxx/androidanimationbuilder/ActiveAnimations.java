@@ -0,0 +1,81 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import java.util.WeakHashMap;
+
+/**
+ * Remembers which auto-cancelling animation run currently owns which view.
+ * Views are only weakly held, and compared by identity (views do not
+ * override equals). Main thread only.
+ */
+final class ActiveAnimations {
+    private static final WeakHashMap<View, AnimationRun> runs = new WeakHashMap<>();
+
+    private ActiveAnimations() { }
+
+    /**
+     * Makes the run the owner of the view. A run that previously owned the
+     * view is canceled right away.
+     */
+    static void register(@NonNull View view, @NonNull AnimationRun run) {
+        AnimationRun previous = runs.put(view, run);
+        if (previous != null && previous != run){
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Removes the run as owner of the view. No-op if another run took over
+     * the view in the meantime.
+     */
+    static void unregister(@NonNull View view, @NonNull AnimationRun run) {
+        if (runs.get(view) == run){
+            runs.remove(view);
+        }
+    }
+
+    @Nullable
+    static AnimationRun get(@NonNull View view) {
+        return runs.get(view);
+    }
+
+    /**
+     * Cancels the run currently owning the view, if any.
+     *
+     * @return  <code>true</code> if a run was canceled.
+     */
+    static boolean cancel(@NonNull View view) {
+        AnimationRun run = runs.remove(view);
+        if (run == null) return false;
+        run.cancel();
+        return true;
+    }
+}
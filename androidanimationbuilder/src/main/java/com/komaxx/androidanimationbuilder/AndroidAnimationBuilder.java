@@ -25,20 +25,21 @@
 
 package com.komaxx.androidanimationbuilder;
 
-import android.animation.Animator;
+import android.graphics.Path;
 import android.os.Build;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewPropertyAnimator;
-import android.view.animation.AccelerateDecelerateInterpolator;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 /**
  * <p>
@@ -62,7 +63,13 @@ import java.util.ArrayList;
  */
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class AndroidAnimationBuilder {
-    private static final boolean DEBUG_LOGGING = false;
+    static final boolean DEBUG_LOGGING = false;
+
+    /**
+     * How long an animation waits for async hooks by default, see
+     * {@link #runAsync(Executor, AsyncStepHook)}.
+     */
+    public static final long DEFAULT_ASYNC_TIMEOUT_MS = 5000;
 
     private final WeakReference<View> viewRef;
 
@@ -70,14 +77,36 @@ public class AndroidAnimationBuilder {
     private int defaultStepDurationMS = 300;
     private boolean startClean = false;
 
-    private final ArrayList<AnimationStep> steps = new ArrayList<>();
+    private ArrayList<AnimationStep> steps = new ArrayList<>();
+
+    // tracks finished via parallel(), played alongside 'steps'
+    private final ArrayList<ArrayList<AnimationStep>> finishedTracks = new ArrayList<>();
+
+    // steps index of each unfinished beginLoop
+    private final ArrayList<Integer> loopStarts = new ArrayList<>();
 
     // not yet added to steps!
     private @NonNull AnimationStep currentStep = new AnimationStep();
 
     private boolean executionTriggered = false;
+    // set when compiled
+    private AnimationTemplate template;
+    // set when executed
+    private @Nullable AnimationRun run;
+
+    private boolean autoCancel = true;
+
+    private boolean bakeInterpolators = false;
+
+    private boolean optimizeChain = true;
 
-    private boolean autoCancelWithTag = true;
+    private Engine engine = Engine.VIEW_PROPERTY_ANIMATOR;
+
+    private SuspendPolicy suspendPolicy = SuspendPolicy.KEEP_RUNNING;
+
+    private Priority priority = Priority.NORMAL;
+
+    private @Nullable AnimationMetricsListener metricsListener;
 
 
     /**
@@ -89,6 +118,14 @@ public class AndroidAnimationBuilder {
         viewRef = new WeakReference<>(v);
     }
 
+    /**
+     * Creates a builder without a view. Only useful to {@link #compile()}
+     * an {@link AnimationTemplate} that is played on views later.
+     */
+    public AndroidAnimationBuilder() {
+        this(null);
+    }
+
     /**
      * Set this to define the default duration of all steps, i.e., the
      * duration of all steps that did not receive explicit duration
@@ -119,25 +156,47 @@ public class AndroidAnimationBuilder {
     }
 
     /**
-     * If this is set true, the running animation steps will automatically
-     * realize that another AnimationBuilder animation was assigned
-     * to the view and cancel itself.
+     * If this is set true, the animation is canceled right away when another
+     * auto-cancelling AnimationBuilder animation is started on the view, or when
+     * {@link #cancel(View)} is called for the view. The currently running step
+     * stops in the same frame.
      * <br/>
-     * <b>Note</b>: This sets the view's tag. Do not use when you need the
-     * tag yourself!
+     * The view's tag is not touched.
      * <br/>
      * Defaults to {@code true}
      */
-    public AndroidAnimationBuilder setAutoCancelWithTag(boolean autoCancelWithTag) {
+    public AndroidAnimationBuilder setAutoCancel(boolean autoCancel) {
         if (alreadyExecuted()) return this;
 
-        this.autoCancelWithTag = autoCancelWithTag;
+        this.autoCancel = autoCancel;
         return this;
     }
 
     /**
-     * If <code>true</code>, the AnimationBuilder will attempt to set the
-     * layer type of the view for the duration of the animation.
+     * @deprecated The view's tag is no longer used. Use {@link #setAutoCancel(boolean)}.
+     */
+    @Deprecated
+    public AndroidAnimationBuilder setAutoCancelWithTag(boolean autoCancelWithTag) {
+        return setAutoCancel(autoCancelWithTag);
+    }
+
+    /**
+     * Cancels the auto-cancelling AnimationBuilder animation currently running on the
+     * given view, if any. The view stays as it is in the moment of cancellation.
+     * Must be called on the main thread.
+     *
+     * @return  <code>true</code> if an animation was canceled.
+     */
+    public static boolean cancel(@NonNull View view) {
+        return ActiveAnimations.cancel(view);
+    }
+
+    /**
+     * If <code>true</code>, the AnimationBuilder will set the layer type of the
+     * view to hardware during steps that actually animate. Pauses and hook-only
+     * steps run without the layer. Layer usage is reference counted per view,
+     * so overlapping animations on the same view restore the original layer
+     * type only when the last of them ends.
      * Default: <code>true</code>.
      */
     public AndroidAnimationBuilder setAllowLayerAdjustmentForAnimation(boolean allowLayerAdjustmentForAnimation) {
@@ -147,6 +206,84 @@ public class AndroidAnimationBuilder {
         return this;
     }
 
+    /**
+     * Selects how the animation is driven. See {@link Engine}.
+     * Default: {@link Engine#VIEW_PROPERTY_ANIMATOR}
+     */
+    public AndroidAnimationBuilder engine(@NonNull Engine engine) {
+        if (alreadyExecuted()) return this;
+
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * Defines what happens when the view is detached from its window or the
+     * window becomes invisible (e.g., the activity went to the background)
+     * while the animation is running. See {@link SuspendPolicy}.
+     * Default: {@link SuspendPolicy#KEEP_RUNNING}
+     */
+    public AndroidAnimationBuilder setSuspendPolicy(@NonNull SuspendPolicy suspendPolicy) {
+        if (alreadyExecuted()) return this;
+
+        this.suspendPolicy = suspendPolicy;
+        return this;
+    }
+
+    /**
+     * How important the animation is when the app-wide {@link AnimationBudget}
+     * has to save time, see {@link Priority}.
+     * Default: {@link Priority#NORMAL}
+     */
+    public AndroidAnimationBuilder setPriority(@NonNull Priority priority) {
+        if (alreadyExecuted()) return this;
+
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Set a listener to receive per-step timing measurements of the animation
+     * (planned vs. actual start and duration, rendered vs. expected frames).
+     * Also makes entering each step show up as a trace section in systrace / Perfetto.
+     * Default: <code>null</code>, nothing is measured.
+     */
+    public AndroidAnimationBuilder setMetricsListener(@Nullable AnimationMetricsListener metricsListener) {
+        if (alreadyExecuted()) return this;
+
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * If <code>true</code>, all interpolators assigned to steps are sampled into
+     * lookup tables when compiling (see {@link Interpolators#bake(Interpolator)}).
+     * Makes expensive custom curves as cheap per frame as the built-in ones.
+     * Default: <code>false</code>.
+     */
+    public AndroidAnimationBuilder setBakeInterpolators(boolean bakeInterpolators) {
+        if (alreadyExecuted()) return this;
+
+        this.bakeInterpolators = bakeInterpolators;
+        return this;
+    }
+
+    /**
+     * If <code>true</code>, the chain of steps is optimized when compiled:
+     * Consecutive pauses are merged, and hook-only steps of 1ms are folded
+     * into the end of the step before. When played, properties that already
+     * have their target value are not animated; a step with nothing left to
+     * animate just waits, without an animator or a hardware layer. The
+     * visible result stays the same.
+     * Default: <code>true</code>.
+     */
+    public AndroidAnimationBuilder setOptimizeChain(boolean optimizeChain) {
+        if (alreadyExecuted()) return this;
+
+        this.optimizeChain = optimizeChain;
+        return this;
+    }
+
     /**
      * Add a rotation animation to the current step. Will replace previously
      * set rotationBy definitions for the current step.
@@ -244,6 +381,87 @@ public class AndroidAnimationBuilder {
         return this;
     }
 
+    /**
+     * Animate any float property in the current step, e.g., one of a custom
+     * view. See {@link AnimatableProperty}. Will replace earlier definitions
+     * of the same property for the current step.
+     * <br/>
+     * Animations with custom properties are always played on the
+     * {@link Engine#TIMELINE}, as each frame sets the value explicitly.
+     */
+    public AndroidAnimationBuilder animate(@NonNull AnimatableProperty.OfFloat property, float value){
+        if (alreadyExecuted()) return this;
+
+        currentStep.setCustom(property, value);
+        return this;
+    }
+
+    /**
+     * Animate any int property in the current step, e.g., a color (see
+     * {@link AnimatableProperty.OfArgb}). Will replace earlier definitions
+     * of the same property for the current step.
+     */
+    public AndroidAnimationBuilder animate(@NonNull AnimatableProperty.OfInt property, int value){
+        if (alreadyExecuted()) return this;
+
+        currentStep.setCustom(property, value);
+        return this;
+    }
+
+    /**
+     * Animate a property registered with {@link AnimatableProperty#register}
+     * in the current step. Int properties (colors included) take the value
+     * as is, so any int is fine. Ignored when no property has this name.
+     */
+    public AndroidAnimationBuilder animate(@NonNull String propertyName, double value){
+        if (alreadyExecuted()) return this;
+
+        AnimatableProperty property = AnimatableProperty.forName(propertyName);
+        if (property == null){
+            Log.w("AndroidAnimationBuilder", "animate ignored: No animatable property registered as '"
+                    + propertyName + "'!");
+            return this;
+        }
+        currentStep.setCustom(property, value);
+        return this;
+    }
+
+    /**
+     * Animate the view's background color. Starts from transparent if the view
+     * does not have a plain color background.
+     */
+    public AndroidAnimationBuilder backgroundColor(int argb){
+        return animate(AnimatableProperty.BACKGROUND_COLOR, argb);
+    }
+
+    /**
+     * Animate the view's elevation. No-op below API level 21.
+     */
+    public AndroidAnimationBuilder elevation(float elevationPx){
+        return animate(AnimatableProperty.ELEVATION, elevationPx);
+    }
+
+    /**
+     * Animate the text size of a TextView. No-op for other views.
+     */
+    public AndroidAnimationBuilder textSize(float textSizePx){
+        return animate(AnimatableProperty.TEXT_SIZE, textSizePx);
+    }
+
+    /**
+     * Animate the text color of a TextView. No-op for other views.
+     */
+    public AndroidAnimationBuilder textColor(int argb){
+        return animate(AnimatableProperty.TEXT_COLOR, argb);
+    }
+
+    /**
+     * Animate the view's padding, all sides alike.
+     */
+    public AndroidAnimationBuilder padding(int paddingPx){
+        return animate(AnimatableProperty.PADDING, paddingPx);
+    }
+
     /**
      * <p>
      * Overwrites all previous set step definitions for translation,
@@ -294,6 +512,42 @@ public class AndroidAnimationBuilder {
         return this;
     }
 
+    /**
+     * Makes the animation wait for some background work before it continues,
+     * e.g., decoding an image that the next step shows. The main thread is not
+     * blocked: The animation stops (no frames, no callbacks) until the work
+     * is done, then calls {@link AsyncStepHook#onDone} on the main thread and
+     * continues. The view stays weakly held while waiting.
+     * <br/>
+     * Finishes the current step (if not empty), the wait is a step of its own.
+     * Gives up after {@link #DEFAULT_ASYNC_TIMEOUT_MS}.<br/>
+     * In a loop, the loop also needs a step that takes time: Work that is done
+     * right away would otherwise make it jump back within one single frame.
+     * Such loops are dropped when compiling.
+     */
+    public AndroidAnimationBuilder runAsync(@NonNull Executor executor, @NonNull AsyncStepHook<?> hook){
+        return runAsync(executor, hook, DEFAULT_ASYNC_TIMEOUT_MS, null);
+    }
+
+    /**
+     * Like {@link #runAsync(Executor, AsyncStepHook)}, but with an explicit timeout
+     * and a fallback: When the work takes longer than 'timeoutMs' or fails, the
+     * fallback is called instead of {@link AsyncStepHook#onDone} and the animation
+     * continues anyway. A late result is dropped.
+     * <br/>
+     * The fallback is also called when the animation can not wait: When skipped
+     * to its end, played in reduced-motion mode, or as a part of parallel
+     * tracks or groups, which share one timeline.
+     */
+    public AndroidAnimationBuilder runAsync(@NonNull Executor executor, @NonNull AsyncStepHook<?> hook,
+                                            long timeoutMs, @Nullable AnimationStepHook fallback){
+        if (alreadyExecuted()) return this;
+
+        if (!currentStep.isEmpty()) then();
+        steps.add(new AsyncStep(executor, hook, timeoutMs, fallback));
+        return this;
+    }
+
     /**
      * Finishes the current animation step definition and starts the next one.
      * Unless given a specific duration it will have the default duration.
@@ -328,9 +582,14 @@ public class AndroidAnimationBuilder {
     }
 
     /**
-     * Duplicates the current step x times. Afterwards the builder
-     * is in the last copy of the repeated step. You might want
+     * Repeats the current step x times. Afterwards the builder
+     * is in the last repetition of the step. You might want
      * to call 'then' afterwards to get a fresh step ;)
+     * <br/>
+     * All repetitions take the duration defined for the step so far. A duration
+     * defined afterwards only applies to the last repetition.
+     * <br/>
+     * Takes constant memory, no matter how often the step is repeated.
      *
      * @param times How often the current step is to be repeated.<br/>
      *              <=0: Does nothing<br/>
@@ -338,13 +597,118 @@ public class AndroidAnimationBuilder {
      *              n: The current step will be executed (n+1) times overall
      */
     public AndroidAnimationBuilder repeat(int times){
-        if (times <= 0) return this;
+        if (times <= 1) return this;
+        if (alreadyExecuted()) return this;
+
+        // all but the last repetition are played by jumping back to one copy
+        int copyIndex = steps.size();
+        steps.add(new AnimationStep(currentStep));
+        if (times > 2){
+            steps.add(new LoopStep(copyIndex, times - 2));
+        }
+
+        return this;
+    }
+
+    /**
+     * Repeats the current step until the animation is canceled, e.g., for
+     * pulsing or spinning. Finishes the step definition: All steps defined
+     * afterwards will never be reached.<br/>
+     * Ignored when the current step is empty: There is nothing to repeat.
+     */
+    public AndroidAnimationBuilder repeatForever(){
+        if (alreadyExecuted()) return this;
+        if (currentStep.isEmpty()){
+            Log.w("AndroidAnimationBuilder", "repeatForever ignored: The current step is empty!");
+            return this;
+        }
+
+        int stepIndex = steps.size();
+        then();
+        steps.add(new LoopStep(stepIndex, LoopStep.FOREVER));
+        return this;
+    }
+
+    /**
+     * Marks the start of a group of steps that is to be repeated, see
+     * {@link #endLoop(int)}. Finishes the current step if it is not empty.
+     * Loops may be nested.
+     */
+    public AndroidAnimationBuilder beginLoop(){
+        if (alreadyExecuted()) return this;
+
+        if (!currentStep.isEmpty()) then();
+        loopStarts.add(steps.size());
+        return this;
+    }
+
+    /**
+     * Finishes the current step (if not empty) and plays all steps since the
+     * matching {@link #beginLoop()} the given number of times overall.
+     * Takes constant memory, no matter how often the steps are repeated.<br/>
+     * Dropped when compiling if the loop waits for background work, see
+     * {@link #runAsync}, but none of its steps takes time.
+     */
+    public AndroidAnimationBuilder endLoop(int times){
+        return endLoopInternal(times - 1);
+    }
+
+    /**
+     * Finishes the current step (if not empty) and plays all steps since the
+     * matching {@link #beginLoop()} until the animation is canceled. All steps
+     * defined afterwards will never be reached.<br/>
+     * Dropped when compiling if the loop's steps take no time at all.
+     */
+    public AndroidAnimationBuilder endLoopForever(){
+        return endLoopInternal(LoopStep.FOREVER);
+    }
+
+    private AndroidAnimationBuilder endLoopInternal(int repeats) {
         if (alreadyExecuted()) return this;
+        if (loopStarts.isEmpty()){
+            Log.w("AndroidAnimationBuilder", "endLoop ignored: No matching beginLoop!");
+            return this;
+        }
 
-        for (int i = 1; i < times; i++){
-            steps.add(new AnimationStep(currentStep));
+        if (!currentStep.isEmpty()) then();
+        int loopStart = loopStarts.remove(loopStarts.size() - 1);
+
+        if (loopStart < steps.size() && (repeats > 0 || repeats == LoopStep.FOREVER)){
+            steps.add(new LoopStep(loopStart, repeats));
         }
+        return this;
+    }
+
+    /**
+     * Finishes the current track and starts a new one that is played in
+     * parallel, starting at the very same time. E.g., fade a (transparent) view
+     * in over 900ms while it bounces three times:
+     * <pre>
+     * builder.alpha(1).ms(900)
+     *        .parallel()
+     *        .beginLoop()
+     *        .translateY(-40).ms(150).then().translateY(0).ms(150)
+     *        .endLoop(3)
+     *        .execute();
+     * </pre>
+     * All tracks are evaluated in one single frame callback, i.e., parallel
+     * animations always use the {@link Engine#TIMELINE} engine (and need
+     * API level 16; below only the first track is played). If several tracks
+     * animate the same property, the track that ends last wins; of tracks
+     * ending at the same time, the one defined last.
+     * Unfinished loops ({@link #beginLoop()}) of the finished track are dropped.
+     */
+    public AndroidAnimationBuilder parallel(){
+        if (alreadyExecuted()) return this;
 
+        if (!currentStep.isEmpty()) then();
+        if (!loopStarts.isEmpty()){
+            Log.w("AndroidAnimationBuilder", "parallel: Dropping beginLoop without matching endLoop!");
+            loopStarts.clear();
+        }
+        finishedTracks.add(steps);
+        steps = new ArrayList<>();
+        currentStep = new AnimationStep();
         return this;
     }
 
@@ -387,7 +751,7 @@ public class AndroidAnimationBuilder {
      */
     public AndroidAnimationBuilder decelerate() {
         if (alreadyExecuted()) return this;
-        currentStep.setInterpolator(new DecelerateInterpolator());
+        currentStep.setInterpolator(Interpolators.DECELERATE);
         return this;
     }
 
@@ -399,82 +763,512 @@ public class AndroidAnimationBuilder {
      */
     public AndroidAnimationBuilder accelerate() {
         if (alreadyExecuted()) return this;
-        currentStep.setInterpolator(new AccelerateInterpolator());
+        currentStep.setInterpolator(Interpolators.ACCELERATE);
+        return this;
+    }
+
+    /**
+     * Makes the current step move like a spring that starts at rest: Pulls the
+     * animated values towards their targets, overshooting them when bouncy.
+     * Sets the step's duration to the time the spring needs to come to rest.
+     * See {@link Physics} for typical values.
+     */
+    public AndroidAnimationBuilder spring(float stiffness, float dampingRatio) {
+        return spring(stiffness, dampingRatio, 0);
+    }
+
+    /**
+     * Makes the current step move like a spring, e.g., to hand over the
+     * velocity of a gesture. Replaces any previously defined interpolator and
+     * sets the step's duration to the time the spring needs to come to rest.
+     * <br/>
+     * The curve is precomputed and shared by all steps with the same spring, so
+     * it costs no more than any other interpolator while playing.
+     *
+     * @param initialVelocity   In distances (from start to target) per second,
+     *                          see {@link Physics#relativeVelocity(float, float)}.
+     */
+    public AndroidAnimationBuilder spring(float stiffness, float dampingRatio, float initialVelocity) {
+        if (alreadyExecuted()) return this;
+
+        Physics.Curve curve = Physics.spring(stiffness, dampingRatio, initialVelocity);
+        currentStep.setInterpolator(curve);
+        currentStep.durationMs = curve.getDurationMs();
+        return this;
+    }
+
+    /**
+     * Makes the current step a fling on the x-axis: Starts with the given
+     * velocity and slows down with {@link Physics#DEFAULT_FRICTION}.
+     * See {@link #flingX(float, float)}.
+     */
+    public AndroidAnimationBuilder flingX(float velocityPxPerSecond) {
+        return flingX(velocityPxPerSecond, Physics.DEFAULT_FRICTION);
+    }
+
+    /**
+     * Makes the current step a fling on the x-axis: Starts with the given
+     * velocity and slows down by friction until it comes to rest. Moves relative
+     * to the x-translation when the step starts, replaces any previously
+     * defined interpolator and sets the step's duration.
+     * <br/>
+     * A step has only one motion curve: To fling in two directions at once, put
+     * {@link #flingY(float, float)} into a {@link #parallel()} track.
+     * <br/>
+     * Only the x- and y-translation can be flung. Other properties may still
+     * follow a gesture with {@link #spring(float, float, float)}.
+     */
+    public AndroidAnimationBuilder flingX(float velocityPxPerSecond, float friction) {
+        return fling(ViewProperties.TRANSLATION_X, velocityPxPerSecond, friction);
+    }
+
+    /**
+     * Makes the current step a fling on the y-axis. See {@link #flingX(float)}.
+     */
+    public AndroidAnimationBuilder flingY(float velocityPxPerSecond) {
+        return flingY(velocityPxPerSecond, Physics.DEFAULT_FRICTION);
+    }
+
+    /**
+     * Makes the current step a fling on the y-axis. See {@link #flingX(float, float)}.
+     */
+    public AndroidAnimationBuilder flingY(float velocityPxPerSecond, float friction) {
+        return fling(ViewProperties.TRANSLATION_Y, velocityPxPerSecond, friction);
+    }
+
+    /**
+     * Moves the view's translation along the given path in the current step,
+     * instead of in a straight line. The path's coordinates are translation
+     * values (like {@link #translateX(float)}), so the view jumps to the path's
+     * start if it is not already there.
+     * See {@link #followPath(Path, boolean, int)}.
+     */
+    public AndroidAnimationBuilder followPath(@NonNull Path path) {
+        return followPath(path, false, PathTable.DEFAULT_SAMPLE_COUNT);
+    }
+
+    /**
+     * Moves the view's translation along the given path in the current step,
+     * optionally rotating the view along the path's tangent.
+     * See {@link #followPath(Path, boolean, int)}.
+     */
+    public AndroidAnimationBuilder followPath(@NonNull Path path, boolean rotateAlongPath) {
+        return followPath(path, rotateAlongPath, PathTable.DEFAULT_SAMPLE_COUNT);
+    }
+
+    /**
+     * Moves the view's translation along the given path in the current step.
+     * The step's interpolator applies to the distance travelled along the path.
+     * Replaces translateX/Y definitions (and rotations when 'rotateAlongPath')
+     * of the step.
+     * <br/>
+     * The path is sampled right away into 'sampleCount' points at evenly spaced
+     * arc lengths, later changes to the path have no effect. While playing,
+     * each frame only costs a lookup in that table.
+     * <br/>
+     * Path steps are evaluated per frame, so animations containing them use the
+     * {@link Engine#TIMELINE} engine. Below API level 16, the view moves in a
+     * straight line to the path's end.
+     *
+     * @param rotateAlongPath   Also sets the view's rotation to the path's tangent
+     *                          direction (0 degrees: moving right).
+     * @param sampleCount       More samples follow tight curves more closely. &gt;= 2
+     */
+    public AndroidAnimationBuilder followPath(@NonNull Path path, boolean rotateAlongPath,
+                                              int sampleCount) {
+        if (alreadyExecuted()) return this;
+
+        currentStep.setPath(new PathTable(path, sampleCount), rotateAlongPath);
+        return this;
+    }
+
+    private AndroidAnimationBuilder fling(int property, float velocity, float friction) {
+        if (alreadyExecuted()) return this;
+
+        Physics.Curve curve = Physics.fling(velocity, friction);
+        currentStep.setBy(property, curve.getDistance());
+        currentStep.setInterpolator(curve);
+        currentStep.durationMs = curve.getDurationMs();
+        return this;
+    }
+
+    /**
+     * Assigns the given interpolator to the animation step, replacing any
+     * previously defined interpolators. Interpolators must be stateless, as
+     * they may be shared by several steps and animations.
+     * <br/>
+     * <b>Default</b> interpolator: AccelerateDecelerate
+     */
+    public AndroidAnimationBuilder interpolate(@NonNull Interpolator interpolator) {
+        if (alreadyExecuted()) return this;
+        currentStep.setInterpolator(interpolator);
         return this;
     }
 
     /**
      * MUST be the final call to the builder. Compiles the actual animations
-     * out of the definitions.
+     * out of the definitions and starts them on the builder's view.
      * All following calls to the build will have no effect;
      */
     public void execute() {
         if (alreadyExecuted()) return;
-        executionTriggered = true;
 
-        // prepare the chain:
-        // add the current step
-        if (!currentStep.isEmpty()) steps.add(currentStep);
-        if (steps.size() < 1){
+        AnimationTemplate template = compile(false);
+
+        View view = viewRef.get();
+        if (view == null){
             if (DEBUG_LOGGING){
-                Log.w("AndroidAnimationBuilder", "No animation defined.");
+                Log.i("AndroidAnimationBuilder", "Not executing: View was cleaned up");
             }
             return;
         }
+        run = template.playOn(view);
+    }
+
+    /**
+     * Alternative final call to the builder: Compiles the animation and brings
+     * the view into its end state right away, without animating. All hooks
+     * are called in order. See {@link AnimationTemplate#applyEndState(View)}.
+     */
+    public void skipToEnd() {
+        if (alreadyExecuted()) return;
+
+        AnimationTemplate template = compile(false);
+
+        View view = viewRef.get();
+        if (view == null){
+            if (DEBUG_LOGGING){
+                Log.i("AndroidAnimationBuilder", "Not executing: View was cleaned up");
+            }
+            return;
+        }
+        run = template.applyEndState(view);
+    }
+
+    /**
+     * Plays the executed animation backwards, from where it currently is (or
+     * from its end, when done) back to where it started. Re-uses this chain's
+     * definitions, no need to build the way back by hand. See
+     * {@link AnimationRun#reverse()} for the details.
+     *
+     * @return  The reversed run, or <code>null</code> when there's nothing to
+     *          reverse (not executed yet, canceled, or already reversed).
+     */
+    @Nullable
+    public AnimationRun reverse() {
+        if (run == null){
+            Log.w("AndroidAnimationBuilder", "Ignored reverse(): Animation was not executed yet.");
+            return null;
+        }
+        return run.reverse();
+    }
+
+    /**
+     * Alternative final call to the builder: Compiles the animation for seeking
+     * instead of playing it, e.g., to link it to scrolling. Nothing moves until
+     * the first {@link SeekableAnimation#setProgress(float)}.
+     *
+     * @return  <code>null</code> if the view was already cleaned up.
+     */
+    @Nullable
+    public SeekableAnimation seekable() {
+        if (alreadyExecuted()) return null;
+
+        AnimationTemplate template = compile(false);
 
         View view = viewRef.get();
-        if (view != null && startClean){
-            CLEAN.run(view);
+        if (view == null){
+            if (DEBUG_LOGGING){
+                Log.i("AndroidAnimationBuilder", "Not executing: View was cleaned up");
+            }
+            return null;
+        }
+        return template.seekOn(view);
+    }
+
+    /**
+     * Switches the reduced motion mode on or off, app wide: Animations started
+     * while it is on are not played, their views get the end state in one
+     * single frame instead (hooks included). E.g., for users who prefer less
+     * motion, or to save battery. Animations are also reduced when they are
+     * disabled system wide (API level 26+).
+     */
+    public static void setReducedMotion(boolean reducedMotion) {
+        AnimationTemplate.reducedMotion = reducedMotion;
+    }
+
+    /**
+     * Alternative final call to the builder: Compiles the animation on the given
+     * executor (e.g., a background thread pool) and returns a handle that is
+     * ready to be played on the main thread with almost no work. Keeps costly
+     * setup like baking interpolators out of the frames of, e.g., a screen
+     * transition. Path samples and physics curves are computed when the steps
+     * are defined, so define the animation on the background thread, too, to
+     * move them off the main thread as well.
+     * <br/>
+     * The view's start state is still captured when playing, as views must
+     * only be read on the main thread.
+     * <br/>
+     * All following definition calls to the builder will have no effect.
+     *
+     * @return  <code>null</code> if the builder was already executed.
+     */
+    @Nullable
+    public PreparedAnimation prepareAsync(@NonNull Executor executor) {
+        if (alreadyExecuted()) return null;
+
+        final PreparedAnimation prepared = new PreparedAnimation(viewRef);
+        // no more definitions from here on. Compiling again is harmless,
+        // it returns the template compiled before.
+        executionTriggered = true;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prepared.onCompiled(compile(false));
+            }
+        });
+        return prepared;
+    }
+
+    /**
+     * Alternative final call to the builder: Compiles the definitions into an
+     * immutable {@link AnimationTemplate} that can be played on any number of
+     * views (e.g., on every bind in a RecyclerView), without defining the
+     * sequence again. The view given to the builder (if any) is ignored.
+     * <br/>
+     * Templates are interned in a small LRU cache: Compiling an identical
+     * definition again returns the cached template. Interpolators are compared
+     * by identity, so keep them in constants to profit. Templates with hooks
+     * (other than {@link #CLEAN}), async steps or a metrics listener are not
+     * cached, so they never keep an Activity alive. Only this explicit call
+     * interns, {@link #execute()} & co. don't.
+     * <br/>
+     * All following definition calls to the builder will have no effect.
+     * Thread safe.
+     */
+    public AnimationTemplate compile() {
+        return compile(true);
+    }
+
+    private synchronized AnimationTemplate compile(boolean intern) {
+        if (template != null) return template;
+        executionTriggered = true;
+
+        // add the current step
+        if (!currentStep.isEmpty()) steps.add(currentStep);
+        finishedTracks.add(steps);
+
+        // the first non-empty track is the main one, all others run in parallel
+        ArrayList<AnimationStep> mainTrack = null;
+        ArrayList<AnimationTemplate> parallelTracks = new ArrayList<>();
+        for (ArrayList<AnimationStep> track : finishedTracks) {
+            if (track.isEmpty()) continue;
+            if (mainTrack == null){
+                mainTrack = track;
+            } else {
+                parallelTracks.add(compileTrack(track, new AnimationTemplate[0]));
+            }
         }
+        if (mainTrack == null) mainTrack = steps;
 
-        // build startState to enable 'reset'
-        StartState startState = new StartState(view);
+        template = compileTrack(mainTrack,
+                parallelTracks.toArray(new AnimationTemplate[parallelTracks.size()]));
+        if (intern) template = AnimationTemplate.intern(template);
+        return template;
+    }
 
-        // build final step that reverts layer changes.
-        FinalStep finalStep = new FinalStep();
-        finalStep.viewRef = viewRef;
-        steps.add(finalStep);
+    /**
+     * Removes endless loops and loops waiting for background work whose steps
+     * take no time: They would jump back over and over within one single frame.
+     */
+    private static void dropIdleLoops(ArrayList<AnimationStep> steps) {
+        for (int i = 0; i < steps.size(); i++){
+            if (!(steps.get(i) instanceof LoopStep)) continue;
+            LoopStep loop = (LoopStep) steps.get(i);
+            if (takesTime(steps, loop.target, i)) continue;
+            if (loop.repeats != LoopStep.FOREVER && !awaitsAsync(steps, loop.target, i)) continue;
+
+            Log.w("AndroidAnimationBuilder", "Loop dropped: Its steps take no time!");
+            steps.remove(i);
+            // loops are only jumping back, so only later loops may point behind the removed one
+            for (int j = i; j < steps.size(); j++){
+                if (!(steps.get(j) instanceof LoopStep)) continue;
+                LoopStep later = (LoopStep) steps.get(j);
+                if (later.target > i) steps.set(j, new LoopStep(later.target - 1, later.repeats));
+            }
+            i--;
+        }
+    }
 
-        String tag = null;
-        if (view != null && autoCancelWithTag){
-            tag = this.toString();
-            view.setTag(tag);
+    private static boolean takesTime(ArrayList<AnimationStep> steps, int from, int to) {
+        for (int i = from; i < to; i++){
+            if (steps.get(i).durationMs > 0) return true;
         }
+        return false;
+    }
 
-        // build chain out of animation steps. Set defaults if not done yet
-        for (int i = 0; i < steps.size()-1; i++){
-            AnimationStep step = steps.get(i);
-            step.viewRef = viewRef;
-            step.nextStep = steps.get(i+1);
-            step.referencingTag = tag;
-            step.startState = startState;
+    private static boolean awaitsAsync(ArrayList<AnimationStep> steps, int from, int to) {
+        for (int i = from; i < to; i++){
+            if (steps.get(i) instanceof AsyncStep) return true;
+        }
+        return false;
+    }
+
+    private AnimationTemplate compileTrack(ArrayList<AnimationStep> steps,
+                                           AnimationTemplate[] parallelTracks) {
+        for (AnimationStep step : steps) {
             step.setDurationIfUnset(defaultStepDurationMS);
         }
+        dropIdleLoops(steps);
+        if (optimizeChain){
+            ChainOptimizer.optimize(steps);
+        }
 
-        if (view != null && allowLayerAdjustmentForAnimation) {
-            finalStep.setEndLayerType(view.getLayerType());
+        AnimationStep[] compiledSteps = new AnimationStep[steps.size()];
+        int loopCount = 0;
+        for (int i = 0; i < compiledSteps.length; i++){
+            AnimationStep step = steps.get(i);
+            if (step instanceof LoopStep){
+                ((LoopStep) step).counterIndex = loopCount++;
+            }
+            // physics curves already are lookup tables
+            if (bakeInterpolators && step.interpolator != null
+                    && !(step.interpolator instanceof Physics.Curve)){
+                step.setInterpolator(Interpolators.bake(step.interpolator));
+            }
+            compiledSteps[i] = step;
+        }
 
-            // speed up the animation if available
-            view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        // 'reset' also takes the custom properties back
+        AnimatableProperty[] customProperties =
+                AnimationTemplate.collectCustomProperties(compiledSteps, new AnimationTemplate[0]);
+        if (customProperties.length > 0){
+            for (AnimationStep step : compiledSteps) {
+                step.addResetTargets(customProperties);
+            }
         }
 
-        steps.get(0).execute();
+        return new AnimationTemplate(compiledSteps, loopCount,
+                startClean, autoCancel, allowLayerAdjustmentForAnimation, optimizeChain, engine,
+                suspendPolicy, priority, metricsListener, parallelTracks);
     }
 
-    static class AnimationStep implements Animator.AnimatorListener {
-        boolean resetting;
+    /**
+     * Decides which animations the {@link AnimationBudget} degrades first when
+     * frames are dropped or too many animations run.
+     */
+    public enum Priority {
+        /**
+         * Decoration: Jumps to its end under pressure.
+         */
+        LOW,
+        /**
+         * Updated less often under pressure (timeline engine only).
+         */
+        NORMAL,
+        /**
+         * Essential to the UI, never degraded.
+         */
+        HIGH
+    }
 
-        @Nullable Float rotateByDegrees;
-        @Nullable Float rotateToDegrees;
+    /**
+     * What a running animation does when nobody can see its view anymore, i.e.,
+     * when the view is detached from the window or the window is hidden.
+     * Hidden windows are noticed at the next step (ViewPropertyAnimator engine)
+     * or frame (timeline engine), detaching right away. The view stays
+     * weakly held.
+     * <br/>
+     * Animations started before their view was ever visible (e.g., in onCreate)
+     * always wait for the first draw, whatever the policy.
+     */
+    public enum SuspendPolicy {
+        /**
+         * Keep playing, hooks included, as if nothing happened.
+         */
+        KEEP_RUNNING,
+        /**
+         * Pause the animation (no callbacks, no hooks) and continue where it
+         * stopped as soon as the view is drawn again.
+         */
+        RESUME,
+        /**
+         * Apply the end state right away, see {@link AnimationRun#skipToEnd()}.
+         */
+        SKIP_TO_END,
+        /**
+         * Stop in the current state, see {@link AnimationRun#cancel()}.
+         */
+        CANCEL
+    }
+
+    /**
+     * The available ways to drive an animation.
+     */
+    public enum Engine {
+        /**
+         * Every step starts its own {@link ViewPropertyAnimator}, the next step is
+         * started when the previous one ended. Will usually lose a frame between
+         * steps.
+         */
+        VIEW_PROPERTY_ANIMATOR,
+        /**
+         * The whole sequence is played as one timeline, driven by a single
+         * {@link android.view.Choreographer} frame callback. Step boundaries fall on
+         * exact frame times, no frames are lost between steps.
+         * Requires API level 16, falls back to VIEW_PROPERTY_ANIMATOR on older devices.
+         */
+        TIMELINE
+    }
+
+    /**
+     * Definition of one step of the animation. Only holds the definition, all
+     * state of a running animation lives in {@link AnimationRun}, so steps can
+     * be shared by any number of runs once compiled.
+     */
+    static class AnimationStep {
+        // Value indices. The first entries map 1:1 to the view properties
+        // captured in StartState (see 'values'), followed by the relative
+        // ("by") values of the same properties (see 'byValues').
+        static final int ROTATE_TO = ViewProperties.ROTATION;
+        static final int TRANSLATION_X = ViewProperties.TRANSLATION_X;
+        static final int TRANSLATION_Y = ViewProperties.TRANSLATION_Y;
+        static final int TRANSLATION_Z = ViewProperties.TRANSLATION_Z;
+        static final int SCALE_X = ViewProperties.SCALE_X;
+        static final int SCALE_Y = ViewProperties.SCALE_Y;
+        static final int ALPHA = ViewProperties.ALPHA;
+        static final int ROTATE_BY = ViewProperties.COUNT + ViewProperties.ROTATION;
+
+        static final int VALUE_COUNT = ViewProperties.COUNT * 2;
 
-        @Nullable Float translationX;
-        @Nullable Float translationY;
-        @Nullable Float translationZ;
+        /**
+         * Custom properties are tracked in int masks.
+         */
+        static final int MAX_CUSTOM_PROPERTIES = 32;
 
-        @Nullable Float scaleX;
-        @Nullable Float scaleY;
+        boolean resetting;
 
-        @Nullable Float alpha;
+        /**
+         * Target values of the step. Only entries whose bit is set in
+         * 'setMask' are defined, all others are to be ignored.
+         * <br/>
+         * Footprint, as measured by AnimationStepTest on a 64-bit JVM with
+         * compressed references: 104 bytes per step (48 of them the array) for
+         * any number of values. With one nullable Float per property, a step took
+         * 80 bytes plus 16 per value. So a single value costs 8 bytes more than
+         * it used to, two values already 8 bytes less, all seven 88 bytes less.
+         */
+        final float[] values;
+        /**
+         * Relative ("by") values, bit <code>(1 &lt;&lt; (COUNT + property))</code>.
+         * Rarely used, so only allocated by the first relative value.
+         */
+        @Nullable float[] byValues;
+        /**
+         * Bit <code>(1 &lt;&lt; index)</code> is set for each defined entry in 'values'.
+         */
+        int setMask;
 
         @Nullable AnimationStepHook preStep;
         @Nullable AnimationStepHook postStep;
@@ -485,80 +1279,104 @@ public class AndroidAnimationBuilder {
          */
         @Nullable Interpolator interpolator;
 
-        // set at latest when animation is built
-        int durationMs;
-
-        // set when animation is built
-        WeakReference<View> viewRef;
-        StartState startState;
-        AnimationStep nextStep;
         /**
-         * Used for automatic animation abortion when another AnimationBuilder is
-         * executed on the same view.
+         * When set, the step moves the view's translation along this path
+         * instead of in a straight line. Needs per-frame evaluation.
          */
-        String referencingTag;
+        @Nullable PathTable path;
+        boolean rotateAlongPath;
 
         /**
-         * Some old devices will call onAnimationEnd more than once! This field
-         * ensures that post-steps and further steps will be run only once.
+         * Targets of other properties than the view properties, see
+         * {@link AnimatableProperty}. Both <code>null</code> when there are none.
+         * A NaN target means "back to the start state", see
+         * {@link #addResetTargets(AnimatableProperty[])}.
          */
-        boolean stepAlreadyFinished = false;
-        /**
-         * Used to remember that an animation was canceled and abort in
-         * onAnimationEnded.
-         */
-        boolean canceled = false;
+        @Nullable AnimatableProperty[] customProperties;
+        @Nullable double[] customValues;
 
-        public AnimationStep(){ }
+        // set at latest when animation is built
+        int durationMs;
+
+        public AnimationStep(){
+            values = new float[ViewProperties.COUNT];
+        }
 
         public AnimationStep(AnimationStep from) {
             this.resetting = from.resetting;
 
-            this.rotateByDegrees = from.rotateByDegrees;
-            this.rotateToDegrees = from.rotateToDegrees;
-
-            this.translationX = from.translationX;
-            this.translationY = from.translationY;
-            this.translationZ = from.translationZ;
-
-            this.scaleX = from.scaleX;
-            this.scaleY = from.scaleY;
-
-            this.alpha = from.alpha;
+            this.values = from.values.clone();
+            this.byValues = from.byValues == null ? null : from.byValues.clone();
+            this.setMask = from.setMask;
 
             this.preStep = from.preStep;
             this.postStep = from.postStep;
 
             this.interpolator = from.interpolator;
+            this.path = from.path;
+            this.rotateAlongPath = from.rotateAlongPath;
+            this.customProperties = from.customProperties == null ? null : from.customProperties.clone();
+            this.customValues = from.customValues == null ? null : from.customValues.clone();
+            this.durationMs = from.durationMs;
         }
 
+        void set(int index, float value) {
+            if (index < ViewProperties.COUNT){
+                values[index] = value;
+            } else {
+                if (byValues == null) byValues = new float[ViewProperties.COUNT];
+                byValues[index - ViewProperties.COUNT] = value;
+            }
+            setMask |= 1 << index;
+        }
 
-        public void setRotateTo(Float rotateToDegrees) {
-            this.rotateToDegrees = rotateToDegrees;
+        /**
+         * The value at the given index, absolute and relative ones alike.
+         * Only meaningful when {@link #isSet(int)}.
+         */
+        float get(int index) {
+            return index < ViewProperties.COUNT
+                    ? values[index] : byValues[index - ViewProperties.COUNT];
+        }
+
+        boolean isSet(int index) {
+            return (setMask & (1 << index)) != 0;
+        }
+
+        public void setRotateTo(float rotateToDegrees) {
+            set(ROTATE_TO, rotateToDegrees);
         }
         void setRotateBy(float degrees) {
-            rotateByDegrees = degrees;
+            set(ROTATE_BY, degrees);
+        }
+
+        /**
+         * Makes the step move the property by 'delta', relative to the value
+         * it has when the step starts. Absolute values have precedence.
+         */
+        void setBy(int property, float delta) {
+            set(ViewProperties.COUNT + property, delta);
         }
 
         void setTranslateX(float translateX) {
-            this.translationX = translateX;
+            set(TRANSLATION_X, translateX);
         }
         void setTranslateY(float translateY) {
-            this.translationY = translateY;
+            set(TRANSLATION_Y, translateY);
         }
         void setTranslateZ(float translateZ) {
-            this.translationZ = translateZ;
+            set(TRANSLATION_Z, translateZ);
         }
 
         void setScaleX(float scaleX) {
-            this.scaleX = scaleX;
+            set(SCALE_X, scaleX);
         }
         void setScaleY(float scaleY) {
-            this.scaleY = scaleY;
+            set(SCALE_Y, scaleY);
         }
 
         void setAlpha(float alpha){
-            this.alpha = alpha;
+            set(ALPHA, alpha);
         }
 
         void setPreStep(@Nullable AnimationStepHook toRun){
@@ -577,6 +1395,112 @@ public class AndroidAnimationBuilder {
             this.interpolator = interpolator;
         }
 
+        void setPath(@Nullable PathTable path, boolean rotateAlongPath) {
+            this.path = path;
+            this.rotateAlongPath = rotateAlongPath;
+        }
+
+        /**
+         * Makes the step animate the custom property towards 'value'. Replaces
+         * an earlier target of the same property.
+         */
+        void setCustom(@NonNull AnimatableProperty property, double value) {
+            int count = getCustomCount();
+            for (int j = 0; j < count; j++){
+                if (customProperties[j] == property){
+                    customValues[j] = value;
+                    return;
+                }
+            }
+            if (count >= MAX_CUSTOM_PROPERTIES){
+                Log.w("AndroidAnimationBuilder", "Ignored " + property.getName()
+                        + ": At most " + MAX_CUSTOM_PROPERTIES + " custom properties per step.");
+                return;
+            }
+
+            AnimatableProperty[] properties = new AnimatableProperty[count + 1];
+            double[] values = new double[count + 1];
+            if (count > 0){
+                System.arraycopy(customProperties, 0, properties, 0, count);
+                System.arraycopy(customValues, 0, values, 0, count);
+            }
+            properties[count] = property;
+            values[count] = value;
+            customProperties = properties;
+            customValues = values;
+        }
+
+        int getCustomCount() {
+            return customProperties == null ? 0 : customProperties.length;
+        }
+
+        /**
+         * Makes a resetting step also take all given custom properties back to the
+         * start state, unless it defines an explicit target for them.
+         */
+        void addResetTargets(@NonNull AnimatableProperty[] properties) {
+            if (!resetting) return;
+            for (AnimatableProperty property : properties) {
+                if (indexOfCustom(property) < 0) setCustom(property, Double.NaN);
+            }
+        }
+
+        private int indexOfCustom(@NonNull AnimatableProperty property) {
+            int count = getCustomCount();
+            for (int j = 0; j < count; j++){
+                if (customProperties[j] == property) return j;
+            }
+            return -1;
+        }
+
+        /**
+         * Reads the values of the custom properties when the step starts, and
+         * computes their targets. Works like {@link #resolveTargets}.
+         *
+         * @return  A mask with the bits of all custom properties (indexed like
+         *          'customProperties') that are animated.
+         */
+        int resolveCustomTargets(@NonNull View view, double[] from, double[] to, StartState startState) {
+            int animated = 0;
+            int count = getCustomCount();
+            for (int j = 0; j < count; j++){
+                from[j] = customProperties[j].read(view);
+                to[j] = resolveCustomTarget(j, startState);
+                if (!Double.isNaN(to[j]) && from[j] != to[j]) animated |= 1 << j;
+            }
+            return animated;
+        }
+
+        /**
+         * The target of the j-th custom property. NaN if it should be reset but
+         * the start state does not know it.
+         */
+        double resolveCustomTarget(int j, StartState startState) {
+            double value = customValues[j];
+            return Double.isNaN(value) ? startState.getCustom(customProperties[j]) : value;
+        }
+
+        /**
+         * Sets all custom properties to their targets right away.
+         */
+        void applyCustomTargets(@NonNull View view, StartState startState) {
+            int count = getCustomCount();
+            for (int j = 0; j < count; j++){
+                double value = resolveCustomTarget(j, startState);
+                if (!Double.isNaN(value)) customProperties[j].write(view, value);
+            }
+        }
+
+        /**
+         * The view properties driven by the path, 0 when there is none.
+         */
+        int getPathMask() {
+            if (path == null) return 0;
+            int mask = (1 << TRANSLATION_X) | (1 << TRANSLATION_Y);
+            if (rotateAlongPath) mask |= 1 << ROTATE_TO;
+            return mask;
+        }
+
 
         /**
          * Decides if the step is at least minimally defined. Empty steps
@@ -588,162 +1512,207 @@ public class AndroidAnimationBuilder {
         }
 
         boolean hasAnimation() {
-            return     rotateByDegrees!=null
-                    || rotateToDegrees!=null
-                    || translationX!=null
-                    || translationY!=null
-                    || translationZ!=null
-                    || scaleX!=null
-                    || scaleY!=null
-                    || alpha!=null
-                    || resetting;
+            return setMask != 0 || resetting || path != null || customProperties != null;
         }
 
         void setDurationIfUnset(int ms) {
             if (durationMs <= 0) durationMs = ms;
         }
 
-        void execute() {
-            View view = viewRef.get();
-            if (view == null){
-                Log.i("AndroidAnimationBuilder", "Aborting animation step: View was cleaned up");
-                return;
+        /**
+         * Computes the values the step animates towards, given the view's values
+         * when the step starts ('from'). Animates towards the 'startState' for
+         * all values not explicitly defined when resetting.
+         *
+         * @param skipReached   Leave out properties that already have their
+         *                      target value, see {@link #setOptimizeChain}.
+         * @return  A mask with the bits of all view properties that are animated.
+         */
+        int resolveTargets(float[] from, float[] to, StartState startState, boolean skipReached) {
+            int animated = 0;
+            if (resetting){
+                System.arraycopy(startState.values, 0, to, 0, ViewProperties.COUNT);
+                animated = ViewProperties.ALL;
             }
 
-            if (referencingTag!=null && view.getTag() != referencingTag){
-                Log.i("AnimationBuilder", "Aborting animation step: View tag has changed!");
-                return;
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if (isSet(i)){
+                    to[i] = values[i];
+                    animated |= 1 << i;
+                } else if (isSet(ViewProperties.COUNT + i)){
+                    to[i] = from[i] + byValues[i];
+                    animated |= 1 << i;
+                }
             }
 
-            if (preStep != null){
-                preStep.run(view);
+            // the path wins over straight translations
+            int pathMask = getPathMask();
+            if (path != null){
+                to[TRANSLATION_X] = path.getEndX();
+                to[TRANSLATION_Y] = path.getEndY();
+                if (rotateAlongPath) to[ROTATE_TO] = path.getEndAngle();
             }
 
-            if (hasAnimation()){
-                ViewPropertyAnimator animate = view.animate();
-
-                if (resetting){
-                    animate.alpha(startState.alpha);
-
-                    animate.scaleX(startState.scaleX);
-                    animate.scaleY(startState.scaleY);
-
-                    animate.translationX(startState.translationX);
-                    animate.translationY(startState.translationY);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP){
-                        animate.translationZ(startState.translationZ);
-                    }
-
-                    animate.rotation(startState.rotation);
-                }
-
-                if (rotateToDegrees != null){
-                    animate.rotation(rotateToDegrees);
-                } else if (rotateByDegrees != null){
-                    animate.rotationBy(rotateByDegrees);
+            // nothing to see when already there (closed paths still move, though)
+            if (skipReached){
+                for (int i = 0; i < ViewProperties.COUNT; i++){
+                    if (from[i] == to[i]) animated &= ~(1 << i);
                 }
+            }
+            return animated | pathMask;
+        }
 
-                if (translationX != null) animate.translationX(translationX);
-                if (translationY != null) animate.translationY(translationY);
+        Interpolator getInterpolatorOrDefault() {
+            return interpolator != null ? interpolator : Interpolators.ACCELERATE_DECELERATE;
+        }
 
-                if (translationZ != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    animate.translationZ(translationZ);
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || o.getClass() != getClass()) return false;
+
+            AnimationStep other = (AnimationStep) o;
+            if (resetting != other.resetting
+                    || setMask != other.setMask
+                    || durationMs != other.durationMs
+                    || !sameHook(preStep, other.preStep)
+                    || !sameHook(postStep, other.postStep)
+                    || interpolator != other.interpolator
+                    || path != other.path
+                    || rotateAlongPath != other.rotateAlongPath
+                    || !Arrays.equals(customProperties, other.customProperties)
+                    || !Arrays.equals(customValues, other.customValues)){
+                return false;
+            }
+            for (int i = 0; i < VALUE_COUNT; i++){
+                if (isSet(i) && Float.floatToIntBits(get(i)) != Float.floatToIntBits(other.get(i))){
+                    return false;
                 }
-
-                if (scaleX != null) animate.scaleX(scaleX);
-                if (scaleY != null) animate.scaleY(scaleY);
-
-                if (alpha != null) animate.alpha(alpha);
-
-                if (interpolator != null) animate.setInterpolator(interpolator);
-                else animate.setInterpolator(new AccelerateDecelerateInterpolator());
-
-                // add other animation types here.
-
-                animate.setDuration(durationMs);
-                animate.setListener(this);
-                animate.start();
-            } else {
-                view.postDelayed(new Runnable() {
-                    @Override  public void run() {
-                        stepFinished();
-                    }
-                }, durationMs);
             }
+            return true;
         }
 
         /**
-         * Called when the step was finished.
+         * Hooks are usually compared by identity, only combined hooks
+         * created by the ChainOptimizer compare their parts.
          */
-        private void stepFinished() {
-            if (canceled){
-                if (DEBUG_LOGGING) {
-                    Log.i("AndroidAnimationBuilder", "NOT processing step end: Already canceled!");
-                }
-                return;
-            }
+        private static boolean sameHook(@Nullable AnimationStepHook a, @Nullable AnimationStepHook b) {
+            return a == b || (a != null && a.equals(b));
+        }
 
-            if (stepAlreadyFinished){
-                if (DEBUG_LOGGING) {
-                    Log.i("AndroidAnimationBuilder", "NOT re-notifying step end: Already ended!");
-                }
-                return;
+        @Override
+        public int hashCode() {
+            int result = resetting ? 1 : 0;
+            result = 31 * result + setMask;
+            result = 31 * result + durationMs;
+            for (int i = 0; i < VALUE_COUNT; i++){
+                if (isSet(i)) result = 31 * result + Float.floatToIntBits(get(i));
             }
-            stepAlreadyFinished = true;
+            result = 31 * result + (preStep == null ? 0 : preStep.hashCode());
+            result = 31 * result + (postStep == null ? 0 : postStep.hashCode());
+            result = 31 * result + System.identityHashCode(interpolator);
+            result = 31 * result + System.identityHashCode(path);
+            result = 31 * result + (rotateAlongPath ? 1 : 0);
+            result = 31 * result + Arrays.hashCode(customProperties);
+            result = 31 * result + Arrays.hashCode(customValues);
+            return result;
+        }
+    }
 
-            View view = viewRef.get();
-            if (view == null){
-                if (DEBUG_LOGGING){
-                    Log.i("AndroidAnimationBuilder", "Aborting animation step when scheduling next step: View was cleaned up");
-                }
-                return;
-            }
+    /**
+     * Not an actual step but a jump: Makes the animation continue at an earlier
+     * step 'repeats' times, then moves on. Loops are played without copying
+     * any steps. Takes no time.
+     */
+    static final class LoopStep extends AnimationStep {
+        static final int FOREVER = -1;
 
-            if (postStep != null) postStep.run(view);
+        /**
+         * Index of the first step of the loop.
+         */
+        final int target;
+        /**
+         * How often to jump back, or FOREVER.
+         */
+        final int repeats;
+        /**
+         * Index of the loop's counter in the per-run loop counters. Set when compiling.
+         */
+        int counterIndex;
 
-            view.postDelayed(new Runnable() {
-                @Override public void run() {
-                    nextStep.execute();
-                }
-            }, 1);
+        LoopStep(int target, int repeats) {
+            this.target = target;
+            this.repeats = repeats;
         }
 
+        @Override boolean isEmpty() { return false; }
+        @Override boolean hasAnimation() { return false; }
+        @Override void setDurationIfUnset(int ms) { }
 
-        @Override  public void onAnimationEnd(Animator animator) {
-            stepFinished();
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LoopStep)) return false;
+
+            LoopStep other = (LoopStep) o;
+            return target == other.target && repeats == other.repeats;
         }
 
-        @Override  public void onAnimationStart(Animator animator) {}
-        @Override  public void onAnimationCancel(Animator animator) {
-            canceled = true;
-            if (DEBUG_LOGGING){
-                Log.i("AndroidAnimationBuilder", "Canceled. No further animations will be executed.");
-            }
+        @Override
+        public int hashCode() {
+            return 31 * target + repeats;
         }
-        @Override  public void onAnimationRepeat(Animator animator) {}
     }
 
     /**
-     * Special no-op final step of the animation. Undoes any changes
-     * to layer settings done to make the animation smooth.
+     * Not an actual step but a wait: The animation stops until the hook's
+     * background work is done or timed out, see {@link #runAsync}. Takes no
+     * time of its own.
      */
-    private static class FinalStep extends AnimationStep {
-        private Integer endLayerType;
+    static final class AsyncStep extends AnimationStep {
+        final Executor executor;
+        final AsyncStepHook<?> hook;
+        final long timeoutMs;
+        @Nullable final AnimationStepHook fallback;
+
+        AsyncStep(@NonNull Executor executor, @NonNull AsyncStepHook<?> hook,
+                  long timeoutMs, @Nullable AnimationStepHook fallback) {
+            this.executor = executor;
+            this.hook = hook;
+            this.timeoutMs = timeoutMs;
+            this.fallback = fallback;
+        }
+
+        @Override boolean isEmpty() { return false; }
+        @Override boolean hasAnimation() { return false; }
+        @Override void setDurationIfUnset(int ms) { }
+
+        void runFallback(@NonNull View view) {
+            if (fallback != null) fallback.run(view);
+        }
+
+        @SuppressWarnings("unchecked")
+        void deliver(@NonNull View view, @Nullable Object result) {
+            ((AsyncStepHook<Object>) hook).onDone(view, result);
+        }
 
         @Override
-        public void execute() {
-            if (DEBUG_LOGGING){
-                Log.d("AndroidAnimationBuilder","Animation done!");
-            }
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AsyncStep)) return false;
 
-            View view = viewRef.get();
-            if (view != null && endLayerType != null){
-                view.setLayerType(endLayerType, null);
-            }
+            AsyncStep other = (AsyncStep) o;
+            return executor == other.executor && hook == other.hook
+                    && timeoutMs == other.timeoutMs && fallback == other.fallback;
         }
 
-        public void setEndLayerType(int layerType) {
-            this.endLayerType = layerType;
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(executor);
+            result = 31 * result + System.identityHashCode(hook);
+            result = 31 * result + (int) (timeoutMs ^ (timeoutMs >>> 32));
+            result = 31 * result + System.identityHashCode(fallback);
+            return result;
         }
     }
 
@@ -751,37 +1720,46 @@ public class AndroidAnimationBuilder {
      * Encapsulates the state of the view at the beginning of the animation
      * for later comparison and undoing.
      */
-    private static class StartState {
-        public final float alpha;
-        public final float scaleX;
-        public final float scaleY;
-        public final float translationX;
-        public final float translationY;
-        public final float translationZ;
-        public final float rotation;
+    static class StartState {
+        /**
+         * Indexed as defined in {@link ViewProperties}.
+         */
+        final float[] values = new float[ViewProperties.COUNT];
 
-        public StartState(@Nullable View view) {
-            if (view == null){
-                alpha = 0;
-                scaleX = scaleY = 0;
-                translationX = translationY = translationZ = 0;
-                rotation = 0;
-            } else {
-                alpha = view.getAlpha();
+        /**
+         * The custom properties the animation touches, and their values.
+         */
+        @NonNull private final AnimatableProperty[] customProperties;
+        @NonNull private final double[] customValues;
 
-                scaleX = view.getScaleX();
-                scaleY = view.getScaleY();
+        public StartState(@Nullable View view) {
+            this(view, new AnimatableProperty[0]);
+        }
 
-                translationX = view.getTranslationX();
-                translationY = view.getTranslationY();
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP){
-                    translationZ = view.getTranslationZ();
-                } else {
-                    translationZ = 0;
+        StartState(@Nullable View view, @NonNull AnimatableProperty[] customProperties) {
+            this.customProperties = customProperties;
+            this.customValues = new double[customProperties.length];
+            if (view != null){
+                ViewProperties.read(view, values);
+                for (int i = 0; i < customProperties.length; i++){
+                    customValues[i] = customProperties[i].read(view);
                 }
+            }
+        }
 
-                rotation = view.getRotation();
+        /**
+         * The property's value at the start, NaN if it was not captured.
+         */
+        double getCustom(@NonNull AnimatableProperty property) {
+            for (int i = 0; i < customProperties.length; i++){
+                if (customProperties[i] == property) return customValues[i];
             }
+            return Double.NaN;
+        }
+
+        @NonNull
+        AnimatableProperty[] getCustomProperties() {
+            return customProperties;
         }
     }
 
@@ -798,6 +1776,27 @@ public class AndroidAnimationBuilder {
         void run(@NonNull View view);
     }
 
+    /**
+     * Background work an animation waits for, see {@link #runAsync(Executor, AsyncStepHook)}.
+     */
+    public interface AsyncStepHook<T> {
+        /**
+         * Does the work, on the executor given to runAsync. Returning is the signal
+         * for the animation to continue. The view is deliberately not available
+         * here. Throwing makes the animation continue with the fallback.
+         */
+        @WorkerThread
+        @Nullable T doInBackground() throws Exception;
+
+        /**
+         * Called on the main thread with the result, right before the animation
+         * continues. Not called when the work timed out or failed, the animation
+         * was canceled, or the view was cleaned up.
+         */
+        @MainThread
+        void onDone(@NonNull View view, @Nullable T result);
+    }
+
     /**
      * A predefined animation hook (can be attached to animation steps) that
      * removes *all* animation-typical transformations from the view (translation,
@@ -0,0 +1,414 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.FloatProperty;
+import android.util.IntProperty;
+import android.util.Property;
+import android.util.TypedValue;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.HashMap;
+
+/**
+ * Any property of a view that can be animated besides the built-in transforms
+ * and alpha, e.g., background color, elevation, padding, or a property of a
+ * custom view. Animated like the built-in properties, see
+ * {@link AndroidAnimationBuilder#animate(OfFloat, float)}, but always on the
+ * timeline engine, as each frame has to set the value explicitly.
+ * <br/>
+ * Values are never boxed: Implement {@link OfFloat}, {@link OfInt}, or
+ * {@link OfArgb} for colors, or wrap an {@link android.util.Property} with
+ * {@link #ofFloat(Property)} and friends. Wrapped <code>FloatProperty</code>s and
+ * <code>IntProperty</code>s (API 24+) are set without boxing, too.
+ * <br/>
+ * Properties with a name can be registered, to be used by name in the builder
+ * and in {@link AnimationSpecs}. The built-in ones are registered from the start.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public abstract class AnimatableProperty {
+    private static final HashMap<String, AnimatableProperty> registry = new HashMap<>();
+
+    /**
+     * Elevation in px. Not animated before Lollipop.
+     */
+    public static final OfFloat ELEVATION = new OfFloat("elevation") {
+        @Override
+        public float get(@NonNull View view) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) return view.getElevation();
+            return 0;
+        }
+
+        @Override
+        public void set(@NonNull View view, float value) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) view.setElevation(value);
+        }
+    };
+
+    /**
+     * The color of a plain color background. Views with any other background
+     * start from transparent.
+     */
+    public static final OfArgb BACKGROUND_COLOR = new OfArgb("backgroundColor") {
+        @Override
+        public int get(@NonNull View view) {
+            Drawable background = view.getBackground();
+            return background instanceof ColorDrawable
+                    ? ((ColorDrawable) background).getColor() : Color.TRANSPARENT;
+        }
+
+        @Override
+        public void set(@NonNull View view, int value) {
+            view.setBackgroundColor(value);
+        }
+    };
+
+    /**
+     * Padding in px, all four sides alike. Starts from the left padding.
+     */
+    public static final OfInt PADDING = new OfInt("padding") {
+        @Override
+        public int get(@NonNull View view) {
+            return view.getPaddingLeft();
+        }
+
+        @Override
+        public void set(@NonNull View view, int value) {
+            view.setPadding(value, value, value, value);
+        }
+    };
+
+    /**
+     * Text size of TextViews in px. Ignored for other views.
+     */
+    public static final OfFloat TEXT_SIZE = new OfFloat("textSize") {
+        @Override
+        public float get(@NonNull View view) {
+            return view instanceof TextView ? ((TextView) view).getTextSize() : 0;
+        }
+
+        @Override
+        public void set(@NonNull View view, float value) {
+            if (view instanceof TextView) ((TextView) view).setTextSize(TypedValue.COMPLEX_UNIT_PX, value);
+        }
+    };
+
+    /**
+     * Text color of TextViews. Ignored for other views.
+     */
+    public static final OfArgb TEXT_COLOR = new OfArgb("textColor") {
+        @Override
+        public int get(@NonNull View view) {
+            return view instanceof TextView ? ((TextView) view).getCurrentTextColor() : Color.TRANSPARENT;
+        }
+
+        @Override
+        public void set(@NonNull View view, int value) {
+            if (view instanceof TextView) ((TextView) view).setTextColor(value);
+        }
+    };
+
+    static {
+        register(ELEVATION);
+        register(BACKGROUND_COLOR);
+        register(PADDING);
+        register(TEXT_SIZE);
+        register(TEXT_COLOR);
+    }
+
+    @Nullable private final String name;
+
+    /**
+     * Package private: Extend {@link OfFloat}, {@link OfInt}, or {@link OfArgb}.
+     */
+    AnimatableProperty(@Nullable String name) {
+        this.name = name;
+    }
+
+    /**
+     * The name the property is registered with, if any.
+     */
+    @Nullable
+    public final String getName() {
+        return name;
+    }
+
+    // Internally, all values are doubles: Exact for floats and ints alike.
+
+    abstract double read(@NonNull View view);
+
+    abstract void write(@NonNull View view, double value);
+
+    /**
+     * The value at the given (interpolated) fraction of the way from 'from' to 'to'.
+     */
+    abstract double evaluate(float fraction, double from, double to);
+
+    /**
+     * Makes the property known by its name, e.g., to be used in specs. Replaces any
+     * property registered with the same name before.
+     */
+    public static void register(@NonNull AnimatableProperty property) {
+        if (property.name == null){
+            throw new IllegalArgumentException("Only named properties can be registered");
+        }
+        synchronized (registry){
+            registry.put(property.name, property);
+        }
+    }
+
+    /**
+     * @return  The property registered with this name, <code>null</code> if unknown.
+     */
+    @Nullable
+    public static AnimatableProperty forName(@NonNull String name) {
+        synchronized (registry){
+            return registry.get(name);
+        }
+    }
+
+    /**
+     * Interpolates each ARGB channel on its own, without any boxing (unlike
+     * ArgbEvaluator). Fractions beyond [0, 1] (e.g., overshooting
+     * interpolators) are clamped per channel.
+     */
+    public static int evaluateArgb(float fraction, int from, int to) {
+        int a = channel(fraction, from >>> 24, to >>> 24);
+        int r = channel(fraction, (from >> 16) & 0xff, (to >> 16) & 0xff);
+        int g = channel(fraction, (from >> 8) & 0xff, (to >> 8) & 0xff);
+        int b = channel(fraction, from & 0xff, to & 0xff);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int channel(float fraction, int from, int to) {
+        int value = from + Math.round((to - from) * fraction);
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * Wraps a float property. Named after the property.
+     */
+    @NonNull
+    public static <V extends View> OfFloat ofFloat(@NonNull Property<V, Float> property) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && property instanceof FloatProperty){
+            return new PrimitiveFloatProperty<>((FloatProperty<V>) property);
+        }
+        return new WrappedFloatProperty<>(property);
+    }
+
+    /**
+     * Wraps an int property. Named after the property.
+     */
+    @NonNull
+    public static <V extends View> OfInt ofInt(@NonNull Property<V, Integer> property) {
+        return new WrappedIntProperty<>(property, false);
+    }
+
+    /**
+     * Wraps an int property holding an ARGB color. Named after the property.
+     */
+    @NonNull
+    public static <V extends View> OfInt ofArgb(@NonNull Property<V, Integer> property) {
+        return new WrappedIntProperty<>(property, true);
+    }
+
+    /**
+     * Base of all float-valued properties.
+     */
+    public abstract static class OfFloat extends AnimatableProperty {
+        /**
+         * @param name  Optional, only needed to {@link #register(AnimatableProperty)}.
+         */
+        protected OfFloat(@Nullable String name) {
+            super(name);
+        }
+
+        public abstract float get(@NonNull View view);
+
+        public abstract void set(@NonNull View view, float value);
+
+        /**
+         * Linear by default.
+         */
+        public float evaluate(float fraction, float from, float to) {
+            return from + (to - from) * fraction;
+        }
+
+        @Override
+        final double read(@NonNull View view) {
+            return get(view);
+        }
+
+        @Override
+        final void write(@NonNull View view, double value) {
+            set(view, (float) value);
+        }
+
+        @Override
+        final double evaluate(float fraction, double from, double to) {
+            return evaluate(fraction, (float) from, (float) to);
+        }
+    }
+
+    /**
+     * Base of all int-valued properties.
+     */
+    public abstract static class OfInt extends AnimatableProperty {
+        /**
+         * @param name  Optional, only needed to {@link #register(AnimatableProperty)}.
+         */
+        protected OfInt(@Nullable String name) {
+            super(name);
+        }
+
+        public abstract int get(@NonNull View view);
+
+        public abstract void set(@NonNull View view, int value);
+
+        /**
+         * Linear, rounded, by default.
+         */
+        public int evaluate(float fraction, int from, int to) {
+            return from + Math.round((to - from) * fraction);
+        }
+
+        @Override
+        final double read(@NonNull View view) {
+            return get(view);
+        }
+
+        @Override
+        final void write(@NonNull View view, double value) {
+            set(view, (int) value);
+        }
+
+        @Override
+        final double evaluate(float fraction, double from, double to) {
+            return evaluate(fraction, (int) from, (int) to);
+        }
+    }
+
+    /**
+     * Base of all properties holding an ARGB color.
+     */
+    public abstract static class OfArgb extends OfInt {
+        protected OfArgb(@Nullable String name) {
+            super(name);
+        }
+
+        @Override
+        public final int evaluate(float fraction, int from, int to) {
+            return evaluateArgb(fraction, from, to);
+        }
+    }
+
+    /**
+     * Sets without boxing, reading still boxes (only once per step).
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    private static final class PrimitiveFloatProperty<V extends View> extends OfFloat {
+        private final FloatProperty<V> property;
+
+        PrimitiveFloatProperty(@NonNull FloatProperty<V> property) {
+            super(property.getName());
+            this.property = property;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public float get(@NonNull View view) {
+            return property.get((V) view);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(@NonNull View view, float value) {
+            property.setValue((V) view, value);
+        }
+    }
+
+    private static final class WrappedFloatProperty<V extends View> extends OfFloat {
+        private final Property<V, Float> property;
+
+        WrappedFloatProperty(@NonNull Property<V, Float> property) {
+            super(property.getName());
+            this.property = property;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public float get(@NonNull View view) {
+            return property.get((V) view);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(@NonNull View view, float value) {
+            property.set((V) view, value);
+        }
+    }
+
+    private static final class WrappedIntProperty<V extends View> extends OfInt {
+        private final Property<V, Integer> property;
+        private final boolean argb;
+
+        WrappedIntProperty(@NonNull Property<V, Integer> property, boolean argb) {
+            super(property.getName());
+            this.property = property;
+            this.argb = argb;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public int get(@NonNull View view) {
+            return property.get((V) view);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(@NonNull View view, int value) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && property instanceof IntProperty){
+                ((IntProperty<V>) property).setValue((V) view, value);
+            } else {
+                property.set((V) view, value);
+            }
+        }
+
+        @Override
+        public int evaluate(float fraction, int from, int to) {
+            return argb ? evaluateArgb(fraction, from, to) : super.evaluate(fraction, from, to);
+        }
+    }
+}
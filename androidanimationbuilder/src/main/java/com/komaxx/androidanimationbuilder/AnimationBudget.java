@@ -0,0 +1,312 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.FloatRange;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+import static com.komaxx.androidanimationbuilder.AndroidAnimationBuilder.DEBUG_LOGGING;
+
+/**
+ * App-wide coordinator of all running animations. Keeps the number of concurrent
+ * animations in check and watches for dropped frames while animations run.
+ * Under pressure (too many dropped frames), animations are degraded depending
+ * on their {@link AndroidAnimationBuilder.Priority}:
+ * <ul>
+ *     <li>LOW: Jump to their end state right away (see {@link AnimationRun#skipToEnd()}).</li>
+ *     <li>NORMAL: Timeline animations only update on every other frame.</li>
+ *     <li>HIGH: Never degraded.</li>
+ * </ul>
+ * When more than {@link #setMaxConcurrentRuns(int)} animations would run, the
+ * oldest one with the lowest priority below HIGH jumps to its end.
+ * <br/>
+ * Only animations that drive themselves are coordinated (not, e.g., the runs of
+ * a group). Off by default, see {@link #setEnabled(boolean)}. Main thread only.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class AnimationBudget {
+    /**
+     * Number of frames the dropped frame ratio is computed over.
+     */
+    private static final int WINDOW_FRAMES = 60;
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+    /**
+     * Faster than any display: Intervals below are not taken as the refresh rate.
+     */
+    private static final long MIN_FRAME_INTERVAL_NANOS = 1000000000L / 240;
+
+    private static int maxConcurrentRuns = Integer.MAX_VALUE;
+    private static float pressureThreshold = 0.25f;
+    private static boolean enabled = false;
+
+    /**
+     * Oldest first.
+     */
+    private static final ArrayList<AnimationRun> runs = new ArrayList<>();
+
+    // dropped frame detection, only active while runs are registered
+    private static final int[] droppedPerFrame = new int[WINDOW_FRAMES];
+    private static int windowIndex = 0;
+    private static int windowFrames = 0;
+    private static int windowDropped = 0;
+    private static long lastFrameNanos = -1;
+    private static long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    /**
+     * The last frame intervals. Dropped frames only make intervals longer, so
+     * their minimum is the refresh rate. Over a window only, as the refresh
+     * rate may also go down (e.g., from 120 to 60 Hz).
+     */
+    private static final long[] intervals = new long[WINDOW_FRAMES];
+    private static int intervalIndex = 0;
+    private static int intervalCount = 0;
+    private static boolean underPressure = false;
+    private static boolean watchingFrames = false;
+
+    private static Choreographer.FrameCallback frameWatcher;
+
+    private AnimationBudget() { }
+
+    /**
+     * At most this many animations run at the same time. Default: unlimited.
+     */
+    @MainThread
+    public static void setMaxConcurrentRuns(int max) {
+        if (max < 1){
+            throw new IllegalArgumentException("At least one concurrent run is required, got " + max);
+        }
+        maxConcurrentRuns = max;
+    }
+
+    /**
+     * The share of dropped frames (over the last second, roughly) above which
+     * animations are degraded. Degrading stops when the share is down to half
+     * of it. Default: 0.25
+     */
+    @MainThread
+    public static void setPressureThreshold(@FloatRange(from = 0, to = 1) float droppedFrameRatio) {
+        pressureThreshold = droppedFrameRatio;
+    }
+
+    /**
+     * Switches all coordination on or off. Default: off.
+     */
+    @MainThread
+    public static void setEnabled(boolean enabled) {
+        AnimationBudget.enabled = enabled;
+        if (!enabled) setUnderPressure(false);
+    }
+
+    /**
+     * Whether animations are currently degraded because frames are dropped.
+     */
+    @MainThread
+    public static boolean isUnderPressure() {
+        return underPressure;
+    }
+
+    /**
+     * Number of coordinated animations currently running.
+     */
+    @MainThread
+    public static int getRunningCount() {
+        purge();
+        return runs.size();
+    }
+
+    static void register(@NonNull AnimationRun run) {
+        if (!enabled) return;
+
+        if (underPressure && run.template.priority == AndroidAnimationBuilder.Priority.LOW){
+            run.skipToEnd();
+            return;
+        }
+
+        runs.add(run);
+        purge();
+        while (runs.size() > maxConcurrentRuns){
+            AnimationRun victim = findVictim();
+            if (victim == null) break;
+            if (DEBUG_LOGGING){
+                Log.i("AndroidAnimationBuilder", "Budget: Too many animations, skipping one to its end.");
+            }
+            // unregisters the victim
+            victim.skipToEnd();
+            runs.remove(victim);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) watchFrames();
+    }
+
+    static void unregister(@NonNull AnimationRun run) {
+        runs.remove(run);
+    }
+
+    /**
+     * Whether the given run should leave out the current frame to save time.
+     */
+    static boolean skipsFrame(@NonNull AnimationRun run, int frameCount) {
+        return underPressure
+                && run.template.priority == AndroidAnimationBuilder.Priority.NORMAL
+                && (frameCount & 1) != 0;
+    }
+
+    /**
+     * The oldest run with the lowest priority, HIGH priority runs excluded.
+     */
+    private static AnimationRun findVictim() {
+        AnimationRun victim = null;
+        for (int i = 0; i < runs.size(); i++){
+            AnimationRun run = runs.get(i);
+            AndroidAnimationBuilder.Priority priority = run.template.priority;
+            if (priority == AndroidAnimationBuilder.Priority.HIGH) continue;
+            if (victim == null || priority.ordinal() < victim.template.priority.ordinal()){
+                victim = run;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Drops runs that ended without noticing, e.g., when their view was
+     * garbage collected.
+     */
+    private static void purge() {
+        for (int i = runs.size() - 1; i >= 0; i--){
+            AnimationRun run = runs.get(i);
+            if (!run.isRunning() || run.viewRef.get() == null) runs.remove(i);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static void watchFrames() {
+        if (watchingFrames) return;
+        watchingFrames = true;
+        lastFrameNanos = -1;
+
+        if (frameWatcher == null){
+            frameWatcher = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback(frameWatcher);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static void onFrame(long frameTimeNanos) {
+        if (lastFrameNanos >= 0){
+            long interval = frameTimeNanos - lastFrameNanos;
+            if (interval >= MIN_FRAME_INTERVAL_NANOS) recordInterval(interval);
+            // a late frame stands for all the frames that were not rendered
+            int dropped = (int) (interval / frameIntervalNanos + 0.5f) - 1;
+            recordFrame(Math.max(0, dropped));
+        }
+        lastFrameNanos = frameTimeNanos;
+
+        purge();
+        if (runs.isEmpty() || !enabled){
+            watchingFrames = false;
+            resetWindow();
+            setUnderPressure(false);
+            return;
+        }
+        Choreographer.getInstance().postFrameCallback(frameWatcher);
+    }
+
+    /**
+     * Keeps 'frameIntervalNanos' at the minimum of the window's intervals.
+     */
+    private static void recordInterval(long interval) {
+        long evicted = intervals[intervalIndex];
+        intervals[intervalIndex] = interval;
+        intervalIndex = (intervalIndex + 1) % WINDOW_FRAMES;
+        if (intervalCount < WINDOW_FRAMES) intervalCount++;
+
+        if (intervalCount == 1 || interval <= frameIntervalNanos){
+            frameIntervalNanos = interval;
+        } else if (evicted == frameIntervalNanos){
+            // the minimum left the window
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < intervalCount; i++){
+                min = Math.min(min, intervals[i]);
+            }
+            frameIntervalNanos = min;
+        }
+    }
+
+    private static void recordFrame(int dropped) {
+        windowDropped += dropped - droppedPerFrame[windowIndex];
+        droppedPerFrame[windowIndex] = dropped;
+        windowIndex = (windowIndex + 1) % WINDOW_FRAMES;
+        if (windowFrames < WINDOW_FRAMES) windowFrames++;
+
+        float ratio = windowDropped / (float) (windowDropped + windowFrames);
+        if (!underPressure && ratio > pressureThreshold){
+            setUnderPressure(true);
+        } else if (underPressure && ratio < pressureThreshold / 2){
+            setUnderPressure(false);
+        }
+    }
+
+    private static void resetWindow() {
+        for (int i = 0; i < WINDOW_FRAMES; i++) droppedPerFrame[i] = 0;
+        windowIndex = 0;
+        windowFrames = 0;
+        windowDropped = 0;
+
+        // measured anew once animations run again
+        intervalIndex = 0;
+        intervalCount = 0;
+        frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    }
+
+    private static void setUnderPressure(boolean pressure) {
+        if (underPressure == pressure) return;
+        underPressure = pressure;
+        if (DEBUG_LOGGING){
+            Log.i("AndroidAnimationBuilder", "Budget: " + (pressure ? "Under pressure" : "Relaxed"));
+        }
+        if (!pressure) return;
+
+        // newest first, skipping removes the run from the list
+        for (int i = runs.size() - 1; i >= 0; i--){
+            if (i >= runs.size()) continue;
+            AnimationRun run = runs.get(i);
+            if (run.template.priority == AndroidAnimationBuilder.Priority.LOW){
+                run.skipToEnd();
+            }
+        }
+    }
+}
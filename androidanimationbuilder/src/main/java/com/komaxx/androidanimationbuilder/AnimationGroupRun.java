@@ -0,0 +1,154 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.Collection;
+
+/**
+ * Plays one {@link AnimationTemplate} on a whole group of views, e.g., for a
+ * staggered entrance of list items. All views are driven by one single
+ * {@link Choreographer} frame callback and share the template's step definitions;
+ * only a small cursor per view is allocated.
+ * Created with {@link AnimationTemplate#playOnAll(Collection, Stagger)}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public final class AnimationGroupRun implements Choreographer.FrameCallback {
+    private static final long NANOS_PER_MS = 1000000L;
+
+    /**
+     * Computes when the animation starts on each view of a group.
+     */
+    public interface Stagger {
+        /**
+         * @param index The index of the view in the group.
+         * @param count The number of views in the group.
+         * @return  The start of the animation on this view in ms, relative
+         *          to the start of the group.
+         */
+        long getStartOffsetMs(int index, int count);
+    }
+
+    /**
+     * Entries are set to null once the respective run ended.
+     */
+    private final FrameDrivenRun[] runs;
+    private final long[] startOffsetsNanos;
+    private final boolean[] started;
+    private int remaining;
+
+    private long startTimeNanos = -1;
+
+    AnimationGroupRun(@NonNull AnimationTemplate template,
+                      @NonNull Collection<? extends View> views, @NonNull Stagger stagger) {
+        int count = views.size();
+        runs = new FrameDrivenRun[count];
+        startOffsetsNanos = new long[count];
+        started = new boolean[count];
+
+        int i = 0;
+        for (View view : views) {
+            runs[i] = template.createFrameDrivenRun(view, true);
+            startOffsetsNanos[i] = stagger.getStartOffsetMs(i, count) * NANOS_PER_MS;
+            i++;
+        }
+        remaining = count;
+    }
+
+    void start() {
+        // views without offset start right away, just like a single run
+        for (int i = 0; i < runs.length; i++){
+            if (startOffsetsNanos[i] <= 0){
+                started[i] = true;
+                runs[i].start();
+            }
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (startTimeNanos < 0) startTimeNanos = frameTimeNanos;
+        long elapsedNanos = frameTimeNanos - startTimeNanos;
+
+        for (int i = 0; i < runs.length; i++){
+            FrameDrivenRun run = runs[i];
+            if (run == null) continue;
+
+            if (!started[i]){
+                if (elapsedNanos < startOffsetsNanos[i]) continue;
+                started[i] = true;
+                run.start();
+                run.setStartTime(startTimeNanos + startOffsetsNanos[i]);
+            }
+
+            if (!run.onFrame(frameTimeNanos)){
+                runs[i] = null;
+                remaining--;
+            }
+        }
+
+        if (remaining > 0){
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Cancels the animation on all views of the group, in their current state.
+     * Views on which the animation did not start yet are left untouched.
+     */
+    public void cancel() {
+        for (int i = 0; i < runs.length; i++){
+            if (runs[i] == null) continue;
+            // never started: the run never touched its view, it just never will
+            if (started[i]) runs[i].cancel();
+            runs[i] = null;
+        }
+        remaining = 0;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    /**
+     * <code>true</code> as long as the animation is running on at least one view
+     * of the group.
+     */
+    public boolean isRunning() {
+        return remaining > 0;
+    }
+
+    /**
+     * Number of views in the group.
+     */
+    public int getViewCount() {
+        return runs.length;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Opt-in listener to measure how animation steps are actually played, compared
+ * to how they were planned. Set with
+ * {@link AndroidAnimationBuilder#setMetricsListener(AnimationMetricsListener)}.
+ * When set, the work of entering each step (hooks, animator setup) is
+ * additionally reported as a systrace / Perfetto section named after the
+ * step index (and the track, for parallel tracks).
+ * <br/>
+ * One run is measured by one recorder, parallel tracks included: It counts the
+ * frames of all tracks with a single frame callback.
+ * <br/>
+ * Without a listener, no measuring whatsoever is done. Only available from
+ * API level 16, the listener is ignored on older devices.
+ */
+public interface AnimationMetricsListener {
+    /**
+     * Called on the main thread right after a step ended, before its
+     * post-step hook ran.
+     *
+     * @param metrics   Measurements of the step. The object is reused for all
+     *                  steps of a run: Only valid during this call!
+     */
+    void onStepMeasured(@NonNull StepMetrics metrics);
+
+    /**
+     * Timings of one played animation step. All times in ms, relative to the
+     * actual start of the first step (of all tracks).
+     */
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    final class StepMetrics {
+        int trackIndex;
+        int stepIndex;
+        float plannedStartMs;
+        float actualStartMs;
+        float plannedDurationMs;
+        float actualDurationMs;
+        int renderedFrames;
+        int expectedFrames;
+
+        StepMetrics() { }
+
+        /**
+         * 0 for the steps defined before the first
+         * {@link AndroidAnimationBuilder#parallel()}, i for the i-th parallel track.
+         */
+        public int getTrackIndex() {
+            return trackIndex;
+        }
+
+        /**
+         * Index of the step within its track.
+         */
+        public int getStepIndex() {
+            return stepIndex;
+        }
+
+        /**
+         * When the step should have started, according to the durations of
+         * all preceding steps.
+         */
+        public float getPlannedStartMs() {
+            return plannedStartMs;
+        }
+
+        public float getActualStartMs() {
+            return actualStartMs;
+        }
+
+        /**
+         * How much later than planned the step actually started.
+         */
+        public float getStartDelayMs() {
+            return actualStartMs - plannedStartMs;
+        }
+
+        public float getPlannedDurationMs() {
+            return plannedDurationMs;
+        }
+
+        public float getActualDurationMs() {
+            return actualDurationMs;
+        }
+
+        /**
+         * Number of frames rendered while the step was running, as counted by
+         * Choreographer frame callbacks.
+         */
+        public int getRenderedFrames() {
+            return renderedFrames;
+        }
+
+        /**
+         * Number of frames that should have been rendered in the planned duration,
+         * based on the shortest frame interval seen in the run.
+         */
+        public int getExpectedFrames() {
+            return expectedFrames;
+        }
+
+        @Override
+        public String toString() {
+            return (trackIndex > 0 ? "Track " + trackIndex + ", step " : "Step ") + stepIndex
+                    + ": start " + actualStartMs + "ms (planned " + plannedStartMs + "ms)"
+                    + ", duration " + actualDurationMs + "ms (planned " + plannedDurationMs + "ms)"
+                    + ", frames " + renderedFrames + " (expected " + expectedFrames + ")";
+        }
+    }
+}
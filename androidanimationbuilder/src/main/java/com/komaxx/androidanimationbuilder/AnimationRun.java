@@ -0,0 +1,623 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+
+import static com.komaxx.androidanimationbuilder.AndroidAnimationBuilder.DEBUG_LOGGING;
+
+/**
+ * The state of one playback of an {@link AnimationTemplate} on one view: Which
+ * step is currently running, what to reset to, and whether it was canceled.
+ * This is the only per-run allocation, all step definitions are shared with
+ * the template. How the steps are actually driven is up to the subclasses,
+ * see {@link AndroidAnimationBuilder.Engine}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public abstract class AnimationRun {
+    final AnimationTemplate template;
+    final WeakReference<View> viewRef;
+
+    AndroidAnimationBuilder.StartState startState;
+
+    /**
+     * Set while this run holds a hardware layer reference at the LayerManager.
+     */
+    private boolean layerAcquired = false;
+
+    int currentStepIndex = -1;
+
+    /**
+     * How often each loop of the template already jumped back. Only
+     * allocated when the template contains loops.
+     */
+    @Nullable private int[] loopCounters;
+
+    /**
+     * Only set when a metrics listener was defined. Tracks of a
+     * {@link ParallelRun} share the recorder of the parent run.
+     */
+    @Nullable MetricsRecorder metrics;
+    /**
+     * The track the steps are reported for, see {@link AnimationTemplate#trackOrder}.
+     */
+    int metricsTrack = 0;
+
+    /**
+     * Set for the tracks of a {@link ParallelRun}: The parent run owns the
+     * view, cleans it, and provides the start state.
+     */
+    private boolean isTrack = false;
+
+    /**
+     * Used to remember that an animation was canceled and abort
+     * when the current step ends.
+     */
+    boolean canceled = false;
+    boolean done = false;
+    private boolean started = false;
+
+    /**
+     * Set while waiting for the view to be visible again, see
+     * {@link AndroidAnimationBuilder.SuspendPolicy#RESUME}.
+     */
+    private boolean suspended = false;
+    /**
+     * Only set when the template's suspend policy requires watching the view.
+     */
+    @Nullable private VisibilityWatcher watcher;
+    /**
+     * Whether the view was visible at some point since the run started. Views
+     * that were not visible yet (e.g., animations started in onCreate) are
+     * always waited for, whatever the policy.
+     */
+    private boolean wasVisible = false;
+
+    /**
+     * Set when the run is coordinated by the {@link AnimationBudget}.
+     */
+    boolean budgeted = false;
+
+    /**
+     * Set while the run waits for an async hook, see
+     * {@link AndroidAnimationBuilder#runAsync}.
+     */
+    @Nullable private AsyncWait asyncWait;
+
+    AnimationRun(@NonNull AnimationTemplate template, @NonNull View view) {
+        this.template = template;
+        this.viewRef = new WeakReference<>(view);
+    }
+
+    final void start() {
+        start(false);
+    }
+
+    /**
+     * Starts the run and brings it to its end right away: The view gets the
+     * end state, all hooks are called in order, but nothing is animated.
+     */
+    final void startInstantly() {
+        start(true);
+    }
+
+    private void start(boolean instantly) {
+        View view = viewRef.get();
+        if (view == null) return;
+
+        if (template.metricsListener != null && !instantly && !isTrack
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            metrics = new MetricsRecorder(template, template.metricsListener);
+        }
+
+        if (template.loopCount > 0){
+            loopCounters = new int[template.loopCount];
+        }
+
+        if (!isTrack){
+            // reversed runs already come with the state of the run they reverse
+            if (startState == null){
+                if (template.startClean){
+                    AndroidAnimationBuilder.CLEAN.run(view);
+                }
+
+                // build startState to enable 'reset'
+                startState = new AndroidAnimationBuilder.StartState(view, template.customProperties);
+            }
+
+            if (template.autoCancel){
+                // cancels any previous owner right away
+                ActiveAnimations.register(view, this);
+            }
+        }
+
+        started = true;
+        if (instantly){
+            foldToEnd(view);
+            if (!canceled && !done) finish(view);
+            return;
+        }
+
+        if (!isTrack && isSelfDriven()
+                && template.suspendPolicy != AndroidAnimationBuilder.SuspendPolicy.KEEP_RUNNING){
+            watcher = new VisibilityWatcher(this);
+            watcher.watch(view);
+        }
+        onStart(view);
+
+        if (!isTrack && isSelfDriven() && isRunning()){
+            budgeted = true;
+            AnimationBudget.register(this);
+        }
+    }
+
+    /**
+     * Makes this run a track of a parallel run, sharing the given start state
+     * and metrics recorder. Must be called before the run is started.
+     */
+    final void makeTrack(@NonNull AndroidAnimationBuilder.StartState sharedStartState,
+                         @Nullable MetricsRecorder sharedMetrics, int trackIndex) {
+        isTrack = true;
+        startState = sharedStartState;
+        metrics = sharedMetrics;
+        metricsTrack = trackIndex;
+    }
+
+    /**
+     * Called once the run was prepared. Start driving the steps here.
+     */
+    abstract void onStart(@NonNull View view);
+
+    /**
+     * <code>true</code> as long as the animation was neither finished, canceled,
+     * nor aborted.
+     */
+    public boolean isRunning() {
+        return started && !done && !canceled;
+    }
+
+    /**
+     * <code>true</code> while the animation waits for its view to be visible
+     * again. See {@link AndroidAnimationBuilder.SuspendPolicy#RESUME}.
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Stops the animation right away and brings the view into the state it would
+     * have at the end of the animation. All hooks of the remaining steps are
+     * called, in order. An animation that loops forever ends in the state
+     * reached when the endless loop jumps back for the first time.
+     * Must be called on the main thread.
+     */
+    public final void skipToEnd() {
+        if (!isRunning()) return;
+
+        View view = viewRef.get();
+        if (view == null){
+            cancel();
+            return;
+        }
+
+        // stops driving the steps, the position in the animation is kept
+        onSuspend(view);
+        suspended = false;
+        foldToEnd(view);
+        if (!canceled && !done) finish(view);
+    }
+
+    /**
+     * Plays this run backwards: From where it currently is (or from its end, when
+     * it is done) back to where it started. Runs that loop forever go back from
+     * where the endless loop jumps back for the first time, at most.<br/>
+     * The steps are not re-defined but taken from the same template, with the
+     * values they resolved to when played forward: <code>rotateBy</code> steps
+     * turn back by what they added, <code>reset</code> steps back to what they
+     * reset. Each step's interpolator is mirrored, so an ease-out step eases in
+     * on the way back. Hooks are called in mirrored order: When a step is
+     * entered from its end, its post-step hook runs; when its start is reached,
+     * its pre-step hook.<br/>
+     * A running animation is stopped right where it is, without calling any
+     * further hooks. Must be called on the main thread.
+     *
+     * @return  The reversed run, or <code>null</code> when this run can not be
+     *          reversed (not started, canceled, already reversed, or part of a
+     *          group) or the view was already cleaned up.
+     */
+    @Nullable
+    public final AnimationRun reverse() {
+        if (!started || canceled || isTrack || !isSelfDriven() || !isReversible()){
+            Log.w("AndroidAnimationBuilder", "Ignored reverse(): Only started, not canceled runs can be reversed.");
+            return null;
+        }
+        View view = viewRef.get();
+        if (view == null) return null;
+
+        long positionMs = done ? Long.MAX_VALUE : getPositionMs();
+        if (!done){
+            // stops where it is, no further hooks
+            cancel();
+        }
+
+        ReverseRun reversed = new ReverseRun(template, view, startState, positionMs);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN
+                || AnimationTemplate.isReducedMotion()){
+            // no frame callbacks (or no motion wanted): Jump back right away
+            reversed.startInstantly();
+        } else {
+            reversed.start();
+        }
+        return reversed;
+    }
+
+    /**
+     * How far the run got, in ms of the unrolled timeline, i.e., with all
+     * repetitions played so far.
+     */
+    abstract long getPositionMs();
+
+    /**
+     * Whether {@link #reverse()} may be called.
+     */
+    boolean isReversible() {
+        return true;
+    }
+
+    /**
+     * Applies the end state of the current step (if still running) and of all
+     * remaining steps to the view, one after the other, hooks included.
+     */
+    void foldToEnd(@NonNull View view) {
+        // no more waiting
+        if (asyncWait != null){
+            AndroidAnimationBuilder.AsyncStep step = asyncWait.step;
+            asyncWait.abandon();
+            asyncWait = null;
+            step.runFallback(view);
+            if (canceled) return;
+        }
+        completeCurrentStep(view);
+
+        float[] from = new float[ViewProperties.COUNT];
+        float[] to = new float[ViewProperties.COUNT];
+        AndroidAnimationBuilder.AnimationStep[] steps = template.steps;
+        for (int index = resolveStepIndex(currentStepIndex + 1, true);
+             index < steps.length && !canceled;
+             index = resolveStepIndex(index + 1, true)){
+            currentStepIndex = index;
+            AndroidAnimationBuilder.AnimationStep step = steps[index];
+            if (step instanceof AndroidAnimationBuilder.AsyncStep){
+                ((AndroidAnimationBuilder.AsyncStep) step).runFallback(view);
+                continue;
+            }
+
+            if (step.preStep != null) step.preStep.run(view);
+            // the hook may have handed the view to another animation
+            if (canceled) return;
+
+            ViewProperties.read(view, from);
+            int mask = step.resolveTargets(from, to, startState, template.optimizeChain);
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if ((mask & (1 << i)) != 0) ViewProperties.set(view, i, to[i]);
+            }
+            step.applyCustomTargets(view, startState);
+
+            if (step.postStep != null) step.postStep.run(view);
+        }
+    }
+
+    /**
+     * Sets the targets of the current step right away and calls its post-step
+     * hook, unless the step already ended. Called after the run stopped
+     * driving the steps.
+     */
+    abstract void completeCurrentStep(@NonNull View view);
+
+    /**
+     * Whether the run drives its steps itself, and may thus be suspended or
+     * degraded by the {@link AnimationBudget}. Runs driven by others (e.g.,
+     * groups or the FrameSimulator) can not.
+     */
+    boolean isSelfDriven() {
+        return true;
+    }
+
+    /**
+     * Applies the suspend policy if the view is currently hidden. Called by
+     * subclasses at step boundaries or frames.
+     *
+     * @return  <code>true</code> when the run was suspended (or ended) and
+     *          must not continue for now.
+     */
+    final boolean suspendIfHidden(@NonNull View view) {
+        if (watcher == null) return false;
+        if (VisibilityWatcher.isVisible(view)){
+            wasVisible = true;
+            return false;
+        }
+        suspend(view);
+        return true;
+    }
+
+    /**
+     * Applies the suspend policy, see {@link AndroidAnimationBuilder.SuspendPolicy}.
+     */
+    final void suspend(@NonNull View view) {
+        if (watcher == null || !isRunning()) return;
+
+        AndroidAnimationBuilder.SuspendPolicy policy = wasVisible
+                ? template.suspendPolicy : AndroidAnimationBuilder.SuspendPolicy.RESUME;
+        switch (policy) {
+            case CANCEL:
+                cancel();
+                break;
+            case SKIP_TO_END:
+                skipToEnd();
+                break;
+            case RESUME:
+                if (suspended) return;
+                if (DEBUG_LOGGING){
+                    Log.i("AndroidAnimationBuilder", "Suspended: View is not visible.");
+                }
+                suspended = true;
+                onSuspend(view);
+                watcher.waitForVisibility(view);
+                break;
+        }
+    }
+
+    /**
+     * Called by the watcher once the view is drawn again.
+     */
+    final void resume(@NonNull View view) {
+        if (!suspended || !isRunning()) return;
+        if (DEBUG_LOGGING){
+            Log.i("AndroidAnimationBuilder", "Resumed: View is visible again.");
+        }
+        suspended = false;
+        wasVisible = true;
+        // when waiting for an async hook, its completion continues
+        if (asyncWait == null) onResume(view);
+    }
+
+    /**
+     * Called by subclasses when entering an async step: Stops driving the steps
+     * until the hook's work is done (or failed, or timed out).
+     *
+     * @return  <code>false</code> when the run can not wait and must continue
+     *          right away. The fallback was already called, then.
+     */
+    final boolean awaitAsync(@NonNull View view, @NonNull AndroidAnimationBuilder.AsyncStep step) {
+        if (!isSelfDriven()){
+            // groups and tracks share one timeline with others
+            step.runFallback(view);
+            return false;
+        }
+
+        if (DEBUG_LOGGING){
+            Log.i("AndroidAnimationBuilder", "Waiting for async hook.");
+        }
+        onSuspend(view);
+        asyncWait = new AsyncWait(this, step);
+        asyncWait.start();
+        return true;
+    }
+
+    /**
+     * Whether the run currently waits for an async hook.
+     */
+    final boolean isAwaitingAsync() {
+        return asyncWait != null;
+    }
+
+    /**
+     * Called on the main thread when the awaited work is done, failed or timed out.
+     */
+    final void asyncDone(@NonNull AsyncWait wait, boolean success, @Nullable Object result) {
+        if (wait != asyncWait) return;
+        asyncWait = null;
+
+        View view = getViewIfStillOwned();
+        if (view == null) return;
+
+        if (success) wait.step.deliver(view, result);
+        else wait.step.runFallback(view);
+
+        // the hooks may have handed the view to another animation; when hidden
+        // in the meantime, resuming continues
+        if (!isRunning() || suspended) return;
+        onResume(view);
+    }
+
+    /**
+     * Stop driving the steps until {@link #onResume(View)}, without losing
+     * the position in the animation.
+     */
+    abstract void onSuspend(@NonNull View view);
+
+    /**
+     * Continue driving the steps where {@link #onSuspend(View)} stopped.
+     */
+    abstract void onResume(@NonNull View view);
+
+    /**
+     * Stops the animation right away, in the current state. The currently
+     * running step is stopped, no further hooks are called. The view's layer
+     * type is restored. Must be called on the main thread.
+     */
+    public final void cancel() {
+        if (canceled || done) return;
+        canceled = true;
+        suspended = false;
+        if (asyncWait != null){
+            asyncWait.abandon();
+            asyncWait = null;
+        }
+
+        if (DEBUG_LOGGING){
+            Log.i("AndroidAnimationBuilder", "Canceled. No further animations will be executed.");
+        }
+
+        View view = viewRef.get();
+        onCancel(view);
+        endMetrics();
+
+        if (budgeted) AnimationBudget.unregister(this);
+        if (view != null){
+            ActiveAnimations.unregister(view, this);
+            releaseLayer(view);
+            if (watcher != null) watcher.stopWatching(view);
+        }
+    }
+
+    /**
+     * Called when the run was canceled. Stop whatever drives the steps here.
+     */
+    abstract void onCancel(@Nullable View view);
+
+    /**
+     * Follows all loop jumps, starting at the given step index.
+     *
+     * @return  The index of the next step to actually play. Equals the number
+     *          of steps when the animation is done.
+     */
+    final int resolveStepIndex(int index) {
+        return resolveStepIndex(index, false);
+    }
+
+    /**
+     * @param stopAtEndlessLoops    When set, an endless loop ends the animation
+     *                              instead of jumping back.
+     */
+    final int resolveStepIndex(int index, boolean stopAtEndlessLoops) {
+        return resolveStepIndex(template.steps, loopCounters, index, stopAtEndlessLoops);
+    }
+
+    /**
+     * Follows all loop jumps in the given steps, counting the jumps in the given
+     * loop counters.
+     */
+    static int resolveStepIndex(AndroidAnimationBuilder.AnimationStep[] steps,
+                                @Nullable int[] loopCounters, int index, boolean stopAtEndlessLoops) {
+        while (index < steps.length && steps[index] instanceof AndroidAnimationBuilder.LoopStep){
+            AndroidAnimationBuilder.LoopStep loop = (AndroidAnimationBuilder.LoopStep) steps[index];
+            if (loop.repeats == AndroidAnimationBuilder.LoopStep.FOREVER){
+                if (stopAtEndlessLoops) return steps.length;
+                index = loop.target;
+            } else if (loopCounters[loop.counterIndex] < loop.repeats){
+                loopCounters[loop.counterIndex]++;
+                index = loop.target;
+            } else {
+                // reset, so an enclosing loop can play this one again
+                loopCounters[loop.counterIndex] = 0;
+                index++;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Delivers the view if the run may still touch it, i.e., the view was not yet
+     * cleaned up and the run was not canceled in the meantime.
+     */
+    @Nullable
+    final View getViewIfStillOwned() {
+        if (canceled){
+            if (DEBUG_LOGGING){
+                Log.i("AndroidAnimationBuilder", "Aborting animation step: Canceled");
+            }
+            return null;
+        }
+
+        View view = viewRef.get();
+        if (view == null){
+            Log.i("AndroidAnimationBuilder", "Aborting animation step: View was cleaned up");
+            endMetrics();
+            return null;
+        }
+        return view;
+    }
+
+    void finish(@NonNull View view) {
+        if (DEBUG_LOGGING){
+            Log.d("AndroidAnimationBuilder","Animation done!");
+        }
+        done = true;
+        suspended = false;
+        endMetrics();
+
+        if (budgeted) AnimationBudget.unregister(this);
+        ActiveAnimations.unregister(view, this);
+        releaseLayer(view);
+        if (watcher != null) watcher.stopWatching(view);
+    }
+
+    /**
+     * Stops measuring. Tracks only end their own part, the parent run ends
+     * the recorder.
+     */
+    private void endMetrics() {
+        if (metrics == null) return;
+        if (isTrack) metrics.trackEnded(metricsTrack);
+        else metrics.runEnded();
+    }
+
+    /**
+     * Called whenever a step is entered: Holds a hardware layer for steps that
+     * actually animate (alpha and transforms only, so the layer never needs
+     * to be redrawn), and gives it up for pauses, hook-only steps, and steps
+     * whose targets are already reached.
+     */
+    final void updateLayerForStep(@NonNull View view, boolean stepAnimates) {
+        if (!template.allowLayerAdjustmentForAnimation) return;
+
+        if (stepAnimates){
+            if (!layerAcquired){
+                layerAcquired = true;
+                LayerManager.acquire(view);
+            }
+        } else {
+            releaseLayer(view);
+        }
+    }
+
+    /**
+     * Undoes any changes to layer settings done to make the animation smooth.
+     */
+    private void releaseLayer(@NonNull View view) {
+        if (layerAcquired){
+            layerAcquired = false;
+            LayerManager.release(view);
+        }
+    }
+}
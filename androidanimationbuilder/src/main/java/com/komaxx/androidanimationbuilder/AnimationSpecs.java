@@ -0,0 +1,549 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.util.LruCache;
+import android.view.animation.Interpolator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+/**
+ * Loads animations from declarative specs instead of defining them in code, so
+ * animations can be changed without touching Java. Specs come as JSON or in a
+ * compact binary form (see {@link #toBinary(String)}), both versioned.
+ * <br/><br/>
+ * JSON example:
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "defaultDurationMs": 300,
+ *   "startClean": true,
+ *   "steps": [
+ *     { "alpha": 0.5, "scaleX": 1.2, "interpolator": "decelerate" },
+ *     { "pause": 200 },
+ *     { "loop": [ { "rotateBy": 90, "ms": 150 } ], "times": 4 },
+ *     { "reset": true, "ms": 500, "repeat": 2 }
+ *   ]
+ * }
+ * </pre>
+ * Step keys: rotateTo, rotateBy, translateX, translateY, translateZ, scaleX,
+ * scaleY, alpha, clean, reset, ms, interpolator (accelerateDecelerate,
+ * accelerate, decelerate, linear), spring {stiffness, dampingRatio, velocity},
+ * flingX / flingY {velocity, friction}, repeat (count or "forever"),
+ * properties {name: value} for properties registered with
+ * {@link AnimatableProperty#register} (colors as numbers or "#rrggbb" / "#aarrggbb").
+ * Special entries: pause (ms) and loop (steps) with times (count or "forever").
+ * Instead of "steps", "tracks" takes a list of step lists played in parallel.
+ * Options: defaultDurationMs, startClean, autoCancel, bakeInterpolators,
+ * engine ("viewPropertyAnimator" or "timeline").
+ * <br/>
+ * Hooks and paths are code and can not be part of a spec.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class AnimationSpecs {
+    /**
+     * The newest spec version this library understands.
+     */
+    public static final int VERSION = 1;
+
+    private static final int CACHE_SIZE = 32;
+
+    // 'AABS'
+    private static final int BINARY_MAGIC = 0x41414253;
+
+    // binary op codes, each followed by its arguments (big endian)
+    private static final byte OP_DEFAULT_DURATION = 1;  // int ms
+    private static final byte OP_START_CLEAN = 2;       // byte flag
+    private static final byte OP_AUTO_CANCEL = 3;       // byte flag
+    private static final byte OP_BAKE_INTERPOLATORS = 4;// byte flag
+    private static final byte OP_ENGINE = 5;            // byte ordinal
+    private static final byte OP_PROPERTY = 10;         // byte index, float value
+    private static final byte OP_CLEAN = 11;
+    private static final byte OP_RESET = 12;
+    private static final byte OP_MS = 13;               // int ms
+    private static final byte OP_INTERPOLATOR = 14;     // byte index into INTERPOLATOR_NAMES
+    private static final byte OP_SPRING = 15;           // float stiffness, damping ratio, velocity
+    private static final byte OP_FLING = 16;            // byte property, float velocity, friction
+    private static final byte OP_REPEAT = 17;           // int times, -1: forever
+    private static final byte OP_THEN = 18;
+    private static final byte OP_PAUSE = 19;            // int ms
+    private static final byte OP_BEGIN_LOOP = 20;
+    private static final byte OP_END_LOOP = 21;         // int times, -1: forever
+    private static final byte OP_PARALLEL = 22;
+    private static final byte OP_CUSTOM_PROPERTY = 23; // short length + UTF-8 name, double value
+
+    private static final int FOREVER = -1;
+
+    /**
+     * JSON keys of the step properties, indexed by the properties' op index.
+     */
+    private static final String[] PROPERTY_KEYS = {
+            "rotateTo", "translateX", "translateY", "translateZ", "scaleX", "scaleY", "alpha", "rotateBy"
+    };
+
+    private static final String[] INTERPOLATOR_NAMES = {
+            "accelerateDecelerate", "accelerate", "decelerate", "linear"
+    };
+
+    private static final String[] ENGINE_NAMES = { "viewPropertyAnimator", "timeline" };
+
+    private static final LruCache<String, AnimationTemplate> cache = new LruCache<>(CACHE_SIZE);
+
+    private AnimationSpecs() { }
+
+    /**
+     * Loads and compiles the spec in the given asset file (JSON or binary).
+     * Uncompressed assets are memory mapped instead of copied. Compiled specs
+     * are cached by path, so loading the same spec again costs nothing.
+     *
+     * @throws IOException  when the asset can not be read.
+     * @throws IllegalArgumentException when the spec is malformed.
+     */
+    @NonNull
+    public static AnimationTemplate load(@NonNull Context context, @NonNull String assetPath)
+            throws IOException {
+        AnimationTemplate template = cache.get(assetPath);
+        if (template != null) return template;
+
+        template = parse(readAsset(context.getAssets(), assetPath));
+        cache.put(assetPath, template);
+        return template;
+    }
+
+    /**
+     * Compiles a spec, JSON (UTF-8) or binary. Not cached, but the resulting
+     * template is interned like any other.
+     *
+     * @throws IllegalArgumentException when the spec is malformed.
+     */
+    @NonNull
+    public static AnimationTemplate parse(@NonNull ByteBuffer spec) {
+        if (spec.remaining() >= 4 && spec.getInt(spec.position()) == BINARY_MAGIC){
+            return play(spec.duplicate());
+        }
+        return parseJson(Charset.forName("UTF-8").decode(spec.duplicate()).toString());
+    }
+
+    /**
+     * Compiles a JSON spec. Not cached.
+     *
+     * @throws IllegalArgumentException when the spec is malformed.
+     */
+    @NonNull
+    public static AnimationTemplate parseJson(@NonNull String json) {
+        return play(ByteBuffer.wrap(toBinary(json)));
+    }
+
+    /**
+     * Converts a JSON spec into the binary form, e.g., in a build step. Binary
+     * specs are smaller and skip JSON parsing when loaded.
+     *
+     * @throws IllegalArgumentException when the spec is malformed.
+     */
+    @NonNull
+    public static byte[] toBinary(@NonNull String json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            JSONObject root = new JSONObject(json);
+            int version = root.optInt("version", VERSION);
+            checkVersion(version);
+
+            out.writeInt(BINARY_MAGIC);
+            out.writeByte(version);
+            writeJson(root, out);
+            out.flush();
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Malformed animation spec: " + e.getMessage());
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Drops all cached specs. Templates already handed out remain valid.
+     */
+    public static void clearCache() {
+        cache.evictAll();
+    }
+
+    private static ByteBuffer readAsset(AssetManager assets, String path) throws IOException {
+        AssetFileDescriptor fd;
+        try {
+            fd = assets.openFd(path);
+        } catch (FileNotFoundException e) {
+            // compressed assets can not be mapped, copy them
+            return readFully(assets.open(path));
+        }
+
+        try {
+            FileInputStream in = fd.createInputStream();
+            try {
+                return in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        fd.getStartOffset(), fd.getLength());
+            } finally {
+                in.close();
+            }
+        } finally {
+            fd.close();
+        }
+    }
+
+    private static ByteBuffer readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1){
+                bytes.write(buffer, 0, read);
+            }
+            return ByteBuffer.wrap(bytes.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void checkVersion(int version) {
+        if (version < 1 || version > VERSION){
+            throw new IllegalArgumentException("Unsupported animation spec version " + version
+                    + ", this library reads up to version " + VERSION);
+        }
+    }
+
+    // //////////////////////////////////////////////////////////////////////
+    // JSON -> binary
+
+    private static void writeJson(JSONObject root, DataOutputStream out)
+            throws JSONException, IOException {
+        Iterator<String> keys = root.keys();
+        while (keys.hasNext()){
+            String key = keys.next();
+            switch (key) {
+                case "version":
+                case "steps":
+                case "tracks":
+                    break;
+                case "defaultDurationMs":
+                    out.writeByte(OP_DEFAULT_DURATION);
+                    out.writeInt(root.getInt(key));
+                    break;
+                case "startClean":
+                    out.writeByte(OP_START_CLEAN);
+                    out.writeBoolean(root.getBoolean(key));
+                    break;
+                case "autoCancel":
+                    out.writeByte(OP_AUTO_CANCEL);
+                    out.writeBoolean(root.getBoolean(key));
+                    break;
+                case "bakeInterpolators":
+                    out.writeByte(OP_BAKE_INTERPOLATORS);
+                    out.writeBoolean(root.getBoolean(key));
+                    break;
+                case "engine":
+                    out.writeByte(OP_ENGINE);
+                    out.writeByte(indexOf(ENGINE_NAMES, root.getString(key), key));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown animation spec option '" + key + "'");
+            }
+        }
+
+        if (root.has("tracks")){
+            JSONArray tracks = root.getJSONArray("tracks");
+            for (int i = 0; i < tracks.length(); i++){
+                if (i > 0) out.writeByte(OP_PARALLEL);
+                writeSteps(tracks.getJSONArray(i), out);
+            }
+        } else {
+            writeSteps(root.getJSONArray("steps"), out);
+        }
+    }
+
+    private static void writeSteps(JSONArray steps, DataOutputStream out)
+            throws JSONException, IOException {
+        for (int i = 0; i < steps.length(); i++){
+            JSONObject step = steps.getJSONObject(i);
+            if (step.has("pause")){
+                out.writeByte(OP_PAUSE);
+                out.writeInt(step.getInt("pause"));
+            } else if (step.has("loop")){
+                out.writeByte(OP_BEGIN_LOOP);
+                writeSteps(step.getJSONArray("loop"), out);
+                out.writeByte(OP_END_LOOP);
+                out.writeInt(readTimes(step, "times"));
+            } else {
+                writeStep(step, out);
+            }
+        }
+    }
+
+    private static void writeStep(JSONObject step, DataOutputStream out)
+            throws JSONException, IOException {
+        // 'clean' first, so explicitly given properties override it
+        if (step.has("clean") && step.getBoolean("clean")) out.writeByte(OP_CLEAN);
+
+        Iterator<String> keys = step.keys();
+        while (keys.hasNext()){
+            String key = keys.next();
+            int property = indexOf(PROPERTY_KEYS, key);
+            if (property >= 0){
+                out.writeByte(OP_PROPERTY);
+                out.writeByte(property);
+                out.writeFloat((float) step.getDouble(key));
+            } else if (key.equals("properties")){
+                writeCustomProperties(step.getJSONObject(key), out);
+            } else if (!isStepKey(key)){
+                throw new IllegalArgumentException("Unknown animation spec step key '" + key + "'");
+            }
+        }
+
+        if (step.has("reset") && step.getBoolean("reset")) out.writeByte(OP_RESET);
+        if (step.has("spring")){
+            JSONObject spring = step.getJSONObject("spring");
+            out.writeByte(OP_SPRING);
+            out.writeFloat((float) spring.getDouble("stiffness"));
+            out.writeFloat((float) spring.getDouble("dampingRatio"));
+            out.writeFloat((float) spring.optDouble("velocity", 0));
+        }
+        writeFling(step, "flingX", ViewProperties.TRANSLATION_X, out);
+        writeFling(step, "flingY", ViewProperties.TRANSLATION_Y, out);
+        // after physics, which set their own duration
+        if (step.has("ms")){
+            out.writeByte(OP_MS);
+            out.writeInt(step.getInt("ms"));
+        }
+        if (step.has("interpolator")){
+            out.writeByte(OP_INTERPOLATOR);
+            out.writeByte(indexOf(INTERPOLATOR_NAMES, step.getString("interpolator"), "interpolator"));
+        }
+
+        int repeat = step.has("repeat") ? readTimes(step, "repeat") : 0;
+        if (repeat != 0){
+            out.writeByte(OP_REPEAT);
+            out.writeInt(repeat);
+        }
+        // repeating forever already finishes the step
+        if (repeat != FOREVER) out.writeByte(OP_THEN);
+    }
+
+    private static void writeCustomProperties(JSONObject properties, DataOutputStream out)
+            throws JSONException, IOException {
+        Iterator<String> names = properties.keys();
+        while (names.hasNext()){
+            String name = names.next();
+            Object value = properties.get(name);
+            byte[] nameBytes = name.getBytes(Charset.forName("UTF-8"));
+
+            out.writeByte(OP_CUSTOM_PROPERTY);
+            out.writeShort(nameBytes.length);
+            out.write(nameBytes);
+            out.writeDouble(value instanceof String
+                    ? Color.parseColor((String) value) : properties.getDouble(name));
+        }
+    }
+
+    private static void writeFling(JSONObject step, String key, int property, DataOutputStream out)
+            throws JSONException, IOException {
+        if (!step.has(key)) return;
+        JSONObject fling = step.getJSONObject(key);
+        out.writeByte(OP_FLING);
+        out.writeByte(property);
+        out.writeFloat((float) fling.getDouble("velocity"));
+        out.writeFloat((float) fling.optDouble("friction", Physics.DEFAULT_FRICTION));
+    }
+
+    private static boolean isStepKey(String key) {
+        switch (key) {
+            case "clean":
+            case "reset":
+            case "spring":
+            case "flingX":
+            case "flingY":
+            case "ms":
+            case "interpolator":
+            case "repeat":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int readTimes(JSONObject object, String key) throws JSONException {
+        Object times = object.get(key);
+        if ("forever".equals(times)) return FOREVER;
+        int count = object.getInt(key);
+        if (count < 1){
+            throw new IllegalArgumentException("'" + key + "' must be >= 1 or \"forever\", got " + count);
+        }
+        return count;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++){
+            if (names[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(String[] names, String name, String key) {
+        int index = indexOf(names, name);
+        if (index < 0){
+            throw new IllegalArgumentException("Unknown " + key + " '" + name + "' in animation spec");
+        }
+        return index;
+    }
+
+    // //////////////////////////////////////////////////////////////////////
+    // binary -> builder
+
+    /**
+     * Replays the binary spec on a fresh builder, so specs behave exactly like
+     * the same calls in code.
+     */
+    private static AnimationTemplate play(ByteBuffer spec) {
+        AndroidAnimationBuilder builder = new AndroidAnimationBuilder();
+        try {
+            if (spec.getInt() != BINARY_MAGIC){
+                throw new IllegalArgumentException("Not a binary animation spec");
+            }
+            checkVersion(spec.get());
+
+            while (spec.hasRemaining()){
+                byte op = spec.get();
+                switch (op) {
+                    case OP_DEFAULT_DURATION: builder.setDefaultStepDuration(spec.getInt()); break;
+                    case OP_START_CLEAN: builder.startClean(spec.get() != 0); break;
+                    case OP_AUTO_CANCEL: builder.setAutoCancel(spec.get() != 0); break;
+                    case OP_BAKE_INTERPOLATORS: builder.setBakeInterpolators(spec.get() != 0); break;
+                    case OP_ENGINE: builder.engine(checkedValue(AndroidAnimationBuilder.Engine.values(), spec.get())); break;
+                    case OP_PROPERTY: setProperty(builder, spec.get(), spec.getFloat()); break;
+                    case OP_CLEAN: builder.clean(); break;
+                    case OP_RESET: builder.reset(); break;
+                    case OP_MS: builder.ms(spec.getInt()); break;
+                    case OP_INTERPOLATOR: builder.interpolate(interpolator(spec.get())); break;
+                    case OP_SPRING: builder.spring(spec.getFloat(), spec.getFloat(), spec.getFloat()); break;
+                    case OP_FLING: fling(builder, spec.get(), spec.getFloat(), spec.getFloat()); break;
+                    case OP_REPEAT: repeat(builder, spec.getInt()); break;
+                    case OP_THEN: builder.then(); break;
+                    case OP_PAUSE: builder.pause(spec.getInt()); break;
+                    case OP_BEGIN_LOOP: builder.beginLoop(); break;
+                    case OP_END_LOOP: endLoop(builder, spec.getInt()); break;
+                    case OP_PARALLEL: builder.parallel(); break;
+                    case OP_CUSTOM_PROPERTY: customProperty(builder, readName(spec), spec.getDouble()); break;
+                    default:
+                        throw new IllegalArgumentException("Unknown op " + op + " in animation spec");
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated animation spec");
+        }
+        return builder.compile();
+    }
+
+    private static void setProperty(AndroidAnimationBuilder builder, int property, float value) {
+        switch (property) {
+            case 0: builder.rotateTo(value); break;
+            case 1: builder.translateX(value); break;
+            case 2: builder.translateY(value); break;
+            case 3: builder.translateZ(value); break;
+            case 4: builder.scaleX(value); break;
+            case 5: builder.scaleY(value); break;
+            case 6: builder.alpha(value); break;
+            case 7: builder.rotateBy(value); break;
+            default:
+                throw new IllegalArgumentException("Unknown property " + property + " in animation spec");
+        }
+    }
+
+    private static void customProperty(AndroidAnimationBuilder builder, String name, double value) {
+        // the builder would just ignore it, but a spec naming it is malformed
+        if (AnimatableProperty.forName(name) == null){
+            throw new IllegalArgumentException("Unknown property '" + name + "' in animation spec");
+        }
+        builder.animate(name, value);
+    }
+
+    private static String readName(ByteBuffer spec) {
+        byte[] name = new byte[spec.getShort() & 0xffff];
+        spec.get(name);
+        return new String(name, Charset.forName("UTF-8"));
+    }
+
+    private static Interpolator interpolator(int index) {
+        switch (index) {
+            case 0: return Interpolators.ACCELERATE_DECELERATE;
+            case 1: return Interpolators.ACCELERATE;
+            case 2: return Interpolators.DECELERATE;
+            case 3: return Interpolators.LINEAR;
+            default:
+                throw new IllegalArgumentException("Unknown interpolator " + index + " in animation spec");
+        }
+    }
+
+    private static void fling(AndroidAnimationBuilder builder, int property, float velocity, float friction) {
+        if (property == ViewProperties.TRANSLATION_X) builder.flingX(velocity, friction);
+        else if (property == ViewProperties.TRANSLATION_Y) builder.flingY(velocity, friction);
+        else throw new IllegalArgumentException("Can not fling property " + property);
+    }
+
+    private static void repeat(AndroidAnimationBuilder builder, int times) {
+        if (times == FOREVER) builder.repeatForever();
+        else builder.repeat(times);
+    }
+
+    private static void endLoop(AndroidAnimationBuilder builder, int times) {
+        if (times == FOREVER) builder.endLoopForever();
+        else builder.endLoop(times);
+    }
+
+    private static <T> T checkedValue(T[] values, int index) {
+        if (index < 0 || index >= values.length){
+            throw new IllegalArgumentException("Unknown value " + index + " in animation spec");
+        }
+        return values[index];
+    }
+}
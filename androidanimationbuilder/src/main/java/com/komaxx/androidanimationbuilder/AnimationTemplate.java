@@ -0,0 +1,552 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Immutable, compiled form of an {@link AndroidAnimationBuilder} definition.
+ * Created with {@link AndroidAnimationBuilder#compile()}. A template holds no
+ * state of any running animation, so the same template can be played on any
+ * number of views, also concurrently.
+ * </p>
+ *
+ * Exemplary usage, e.g., in a RecyclerView adapter:
+ * <pre>
+ *      static final AnimationTemplate WIGGLE = new AndroidAnimationBuilder()
+ *             .setDefaultStepDuration(60)
+ *             .rotateTo(2)
+ *             .then().rotateBy(-6)
+ *             .then().reset().ms(120)
+ *             .compile();
+ *
+ *      // in onBindViewHolder:
+ *      WIGGLE.playOn(holder.itemView);
+ * </pre>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class AnimationTemplate {
+    /**
+     * How many distinct templates are kept in the interning cache.
+     */
+    private static final int CACHE_SIZE = 32;
+
+    /**
+     * Duration of animations that loop forever.
+     */
+    public static final long INFINITE_DURATION = -1;
+
+    static volatile boolean reducedMotion = false;
+
+    private static final LinkedHashMap<AnimationTemplate, AnimationTemplate> cache =
+            new LinkedHashMap<AnimationTemplate, AnimationTemplate>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<AnimationTemplate, AnimationTemplate> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    final AndroidAnimationBuilder.AnimationStep[] steps;
+
+    final boolean startClean;
+    final boolean autoCancel;
+    final boolean allowLayerAdjustmentForAnimation;
+    /**
+     * Whether the chain was optimized, see {@link AndroidAnimationBuilder#setOptimizeChain}.
+     * When set, steps also leave out properties that already have their target value.
+     */
+    final boolean optimizeChain;
+    final AndroidAnimationBuilder.Engine engine;
+    final AndroidAnimationBuilder.SuspendPolicy suspendPolicy;
+    final AndroidAnimationBuilder.Priority priority;
+    @Nullable final AnimationMetricsListener metricsListener;
+    /**
+     * Trace section name of each step, per track (see {@link #trackOrder} for
+     * the indices). Only built when measured.
+     */
+    @Nullable final String[][] traceSectionNames;
+
+    /**
+     * Number of loops in 'steps', i.e., how many loop counters a run needs.
+     */
+    final int loopCount;
+
+    /**
+     * Further tracks that run in parallel to 'steps', see
+     * {@link AndroidAnimationBuilder#parallel()}. Empty for plain animations.
+     */
+    final AnimationTemplate[] parallelTracks;
+    /**
+     * The order in which all tracks are evaluated, 0 being this template's own
+     * steps and i+1 parallelTracks[i]: By end time, endless tracks last, tracks
+     * of the same length in order of definition. So when several tracks animate
+     * the same property, the track ending last wins - played, skipped to the
+     * end, sought, or reversed alike.
+     */
+    final int[] trackOrder;
+
+    /**
+     * Whether some step can only be played frame by frame (e.g., path steps or
+     * custom properties), no matter which engine was chosen.
+     */
+    final boolean needsFrameEvaluation;
+
+    /**
+     * All custom properties animated, parallel tracks included. Captured in
+     * the start state to enable 'reset'.
+     */
+    final AnimatableProperty[] customProperties;
+    /**
+     * The most custom properties a single step animates.
+     */
+    final int maxStepCustomCount;
+
+    private final long totalDurationMs;
+
+    private final int hashCode;
+
+    AnimationTemplate(AndroidAnimationBuilder.AnimationStep[] steps, int loopCount,
+                      boolean startClean, boolean autoCancel,
+                      boolean allowLayerAdjustmentForAnimation, boolean optimizeChain,
+                      AndroidAnimationBuilder.Engine engine,
+                      AndroidAnimationBuilder.SuspendPolicy suspendPolicy,
+                      AndroidAnimationBuilder.Priority priority,
+                      @Nullable AnimationMetricsListener metricsListener,
+                      AnimationTemplate[] parallelTracks) {
+        this.steps = steps;
+        this.startClean = startClean;
+        this.autoCancel = autoCancel;
+        this.allowLayerAdjustmentForAnimation = allowLayerAdjustmentForAnimation;
+        this.optimizeChain = optimizeChain;
+        this.engine = engine;
+        this.suspendPolicy = suspendPolicy;
+        this.priority = priority;
+        this.metricsListener = metricsListener;
+
+        this.loopCount = loopCount;
+        this.parallelTracks = parallelTracks;
+        traceSectionNames = metricsListener == null ? null : buildTraceSectionNames(steps, parallelTracks);
+        customProperties = collectCustomProperties(steps, parallelTracks);
+        int maxCustom = 0;
+        for (AndroidAnimationBuilder.AnimationStep step : steps) {
+            maxCustom = Math.max(maxCustom, step.getCustomCount());
+        }
+        maxStepCustomCount = maxCustom;
+        needsFrameEvaluation = parallelTracks.length > 0 || containsPathStep(steps)
+                || customProperties.length > 0;
+        long ownDurationMs = computeTotalDuration(steps);
+        totalDurationMs = computeTotalDuration(ownDurationMs, parallelTracks);
+        trackOrder = computeTrackOrder(ownDurationMs, parallelTracks);
+
+        int result = Arrays.hashCode(steps);
+        result = 31 * result + loopCount;
+        result = 31 * result + (startClean ? 1 : 0);
+        result = 31 * result + (autoCancel ? 1 : 0);
+        result = 31 * result + (allowLayerAdjustmentForAnimation ? 1 : 0);
+        result = 31 * result + (optimizeChain ? 1 : 0);
+        result = 31 * result + engine.ordinal();
+        result = 31 * result + suspendPolicy.ordinal();
+        result = 31 * result + priority.ordinal();
+        result = 31 * result + System.identityHashCode(metricsListener);
+        result = 31 * result + Arrays.hashCode(parallelTracks);
+        hashCode = result;
+    }
+
+    /**
+     * Returns a previously compiled template with the very same definition if
+     * one is still in the cache, or caches and returns the given one otherwise.
+     * <br/>
+     * Templates with hooks, async steps or a metrics listener are never cached:
+     * Those usually reference an Activity or Fragment, which the static cache
+     * would keep alive.
+     */
+    static AnimationTemplate intern(AnimationTemplate template) {
+        if (template.holdsCallbacks()) return template;
+        synchronized (cache) {
+            AnimationTemplate cached = cache.get(template);
+            if (cached != null) return cached;
+            cache.put(template, template);
+            return template;
+        }
+    }
+
+    /**
+     * Whether this template or one of its parallel tracks references code of
+     * the app, other than the predefined {@link AndroidAnimationBuilder#CLEAN}.
+     */
+    private boolean holdsCallbacks() {
+        if (metricsListener != null) return true;
+        for (AndroidAnimationBuilder.AnimationStep step : steps) {
+            if (step instanceof AndroidAnimationBuilder.AsyncStep) return true;
+            if (step.preStep != null && step.preStep != AndroidAnimationBuilder.CLEAN) return true;
+            if (step.postStep != null && step.postStep != AndroidAnimationBuilder.CLEAN) return true;
+        }
+        for (AnimationTemplate track : parallelTracks) {
+            if (track.holdsCallbacks()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops all templates from the interning cache. Templates already handed out
+     * remain valid.
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Starts the animation on the given view. The view is only WEAKLY held.
+     * Only allocates the state of this one run - all definitions are shared.
+     * Must be called on the main thread.
+     */
+    public AnimationRun playOn(@NonNull View view) {
+        if (steps.length > 0 && isReducedMotion()) return applyEndState(view);
+
+        AnimationRun run = createRun(view);
+        if (steps.length < 1){
+            if (AndroidAnimationBuilder.DEBUG_LOGGING){
+                Log.w("AndroidAnimationBuilder", "No animation defined.");
+            }
+            return run;
+        }
+        run.start();
+        return run;
+    }
+
+    /**
+     * Brings the view into the state it would have at the end of the animation
+     * right away, in one single frame. All hooks are called in order. Animations
+     * that loop forever end in the state reached when the endless loop jumps
+     * back for the first time. Must be called on the main thread.
+     *
+     * @return  The (already finished) run.
+     */
+    public AnimationRun applyEndState(@NonNull View view) {
+        AnimationRun run = createRun(view);
+        run.startInstantly();
+        return run;
+    }
+
+    /**
+     * Takes over the view for seeking instead of playing: The returned
+     * animation brings the view to any point of the animation on demand (e.g.,
+     * on every scroll event). Cancels the view's running animation, cleans the
+     * view if the template starts clean. See {@link SeekableAnimation}.
+     */
+    @NonNull
+    public SeekableAnimation seekOn(@NonNull View view) {
+        return new SeekableAnimation(this, view);
+    }
+
+    /**
+     * Computes the state the view would have at the end of the animation, when
+     * starting in its current state. See {@link #computeEndState(ViewState)}.
+     */
+    @NonNull
+    public ViewState computeEndState(@NonNull View view) {
+        return computeEndState(ViewState.of(view));
+    }
+
+    /**
+     * Computes the state a view would have at the end of the animation, without
+     * playing it or touching any view. Takes one pass over the steps, no matter
+     * how often they are repeated. Hooks are left out, as they need a view.
+     * Only covers the view properties of {@link ViewState}, no
+     * {@link AnimatableProperty custom properties}.
+     * Animations that loop forever end in the state reached when the endless
+     * loop jumps back for the first time.
+     * <br/>
+     * Handy to check animations in unit tests.
+     *
+     * @param start The state of the view when the animation starts.
+     */
+    @NonNull
+    public ViewState computeEndState(@NonNull ViewState start) {
+        float[] values = startClean ? ViewState.clean().values : start.values.clone();
+        EndStateEvaluator.fold(this, values);
+        return new ViewState(values);
+    }
+
+    private AnimationRun createRun(@NonNull View view) {
+        AnimationRun run;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && (engine == AndroidAnimationBuilder.Engine.TIMELINE || needsFrameEvaluation)){
+            run = createFrameDrivenRun(view, false);
+        } else {
+            if (needsFrameEvaluation){
+                Log.w("AndroidAnimationBuilder", "Parallel tracks and paths need API level 16. "
+                        + "Only playing the first track, paths as straight lines.");
+            }
+            run = new AnimatorRun(this, view);
+        }
+        return run;
+    }
+
+    /**
+     * Whether animations are to be replaced by their end state: Either switched
+     * on via {@link AndroidAnimationBuilder#setReducedMotion(boolean)}, or
+     * animations are disabled system wide (e.g., by battery saver, or the
+     * animator duration scale set to 0 in the developer options; API level 26+).
+     */
+    static boolean isReducedMotion() {
+        return reducedMotion
+                || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && !ValueAnimator.areAnimatorsEnabled());
+    }
+
+    /**
+     * Starts the animation on all given views, driven by one single frame callback.
+     * The views are only WEAKLY held. Always uses the
+     * {@link AndroidAnimationBuilder.Engine#TIMELINE} engine. Must be called on the
+     * main thread.
+     * <br/>
+     * Below API level 16 the views are animated independently, started with
+     * the offsets of the stagger. With reduced motion, all views get the end
+     * state right away.
+     *
+     * @param stagger   Defines when the animation starts on each of the views.
+     *                  See {@link #linearStagger(long)}.
+     * @return  The group's run. <code>null</code> below API level 16 and with
+     *          reduced motion.
+     */
+    @Nullable
+    public AnimationGroupRun playOnAll(@NonNull Collection<? extends View> views,
+                                       @NonNull AnimationGroupRun.Stagger stagger) {
+        if (steps.length > 0 && isReducedMotion()){
+            for (View view : views) {
+                applyEndState(view);
+            }
+            return null;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN){
+            playStaggeredFallback(views, stagger);
+            return null;
+        }
+
+        AnimationGroupRun groupRun = new AnimationGroupRun(this, views, stagger);
+        if (steps.length < 1){
+            if (AndroidAnimationBuilder.DEBUG_LOGGING){
+                Log.w("AndroidAnimationBuilder", "No animation defined.");
+            }
+            return groupRun;
+        }
+        groupRun.start();
+        return groupRun;
+    }
+
+    /**
+     * Creates (but does not start) a frame driven run of this template: Either
+     * a plain timeline or, when there are parallel tracks, a run driving all of them.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    FrameDrivenRun createFrameDrivenRun(@NonNull View view, boolean externallyDriven) {
+        if (parallelTracks.length > 0) return new ParallelRun(this, view, externallyDriven);
+        return new TimelineRun(this, view, externallyDriven);
+    }
+
+    private void playStaggeredFallback(@NonNull Collection<? extends View> views,
+                                       @NonNull AnimationGroupRun.Stagger stagger) {
+        int count = views.size();
+        int i = 0;
+        for (final View view : views) {
+            long offsetMs = stagger.getStartOffsetMs(i++, count);
+            if (offsetMs <= 0){
+                playOn(view);
+            } else {
+                view.postDelayed(new Runnable() {
+                    @Override public void run() {
+                        playOn(view);
+                    }
+                }, offsetMs);
+            }
+        }
+    }
+
+    /**
+     * A stagger that starts the animation on each view <code>msPerView</code>
+     * later than on the previous one.
+     */
+    public static AnimationGroupRun.Stagger linearStagger(final long msPerView) {
+        return new AnimationGroupRun.Stagger() {
+            @Override
+            public long getStartOffsetMs(int index, int count) {
+                return index * msPerView;
+            }
+        };
+    }
+
+    /**
+     * Number of steps in the compiled animation.
+     */
+    public int getStepCount() {
+        return steps.length;
+    }
+
+    /**
+     * The summed up duration of all steps in ms, repetitions included. With
+     * parallel tracks, the duration of the longest one.
+     * {@link #INFINITE_DURATION} if the animation loops forever.
+     */
+    public long getTotalDurationMs() {
+        return totalDurationMs;
+    }
+
+    private static boolean containsPathStep(AndroidAnimationBuilder.AnimationStep[] steps) {
+        for (AndroidAnimationBuilder.AnimationStep step : steps) {
+            if (step.path != null) return true;
+        }
+        return false;
+    }
+
+    private static String[][] buildTraceSectionNames(AndroidAnimationBuilder.AnimationStep[] steps,
+                                                     AnimationTemplate[] parallelTracks) {
+        String[][] names = new String[parallelTracks.length + 1][];
+        names[0] = new String[steps.length];
+        for (int i = 0; i < steps.length; i++){
+            names[0][i] = "AnimationBuilder step " + i;
+        }
+        for (int t = 1; t < names.length; t++){
+            names[t] = new String[parallelTracks[t - 1].steps.length];
+            for (int i = 0; i < names[t].length; i++){
+                names[t][i] = "AnimationBuilder track " + t + " step " + i;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * All distinct custom properties of the steps and tracks, in order of appearance.
+     */
+    static AnimatableProperty[] collectCustomProperties(AndroidAnimationBuilder.AnimationStep[] steps,
+                                                        AnimationTemplate[] parallelTracks) {
+        ArrayList<AnimatableProperty> properties = new ArrayList<>();
+        for (AndroidAnimationBuilder.AnimationStep step : steps) {
+            for (int j = 0; j < step.getCustomCount(); j++){
+                if (!properties.contains(step.customProperties[j])) properties.add(step.customProperties[j]);
+            }
+        }
+        for (AnimationTemplate track : parallelTracks) {
+            for (AnimatableProperty property : track.customProperties) {
+                if (!properties.contains(property)) properties.add(property);
+            }
+        }
+        return properties.toArray(new AnimatableProperty[properties.size()]);
+    }
+
+    private static long computeTotalDuration(long ownDurationMs, AnimationTemplate[] parallelTracks) {
+        long total = ownDurationMs;
+        for (AnimationTemplate track : parallelTracks) {
+            if (total == INFINITE_DURATION || track.totalDurationMs == INFINITE_DURATION){
+                return INFINITE_DURATION;
+            }
+            total = Math.max(total, track.totalDurationMs);
+        }
+        return total;
+    }
+
+    /**
+     * Sorts the tracks by end time, see {@link #trackOrder}.
+     */
+    private static int[] computeTrackOrder(long ownDurationMs, AnimationTemplate[] parallelTracks) {
+        int[] order = new int[parallelTracks.length + 1];
+        long[] ends = new long[order.length];
+        ends[0] = ownDurationMs;
+        for (int i = 0; i < parallelTracks.length; i++){
+            ends[i+1] = parallelTracks[i].totalDurationMs;
+        }
+
+        // insertion sort: stable, so tracks ending at the same time keep their order
+        for (int t = 0; t < order.length; t++){
+            if (ends[t] == INFINITE_DURATION) ends[t] = Long.MAX_VALUE;
+            int k = t;
+            while (k > 0 && ends[order[k - 1]] > ends[t]){
+                order[k] = order[k - 1];
+                k--;
+            }
+            order[k] = t;
+        }
+        return order;
+    }
+
+    /**
+     * Sums up the step durations, loops included. A loop adds the duration of
+     * its range (nested loops included) once per repetition.
+     */
+    private static long computeTotalDuration(AndroidAnimationBuilder.AnimationStep[] steps) {
+        // offsets[i]: time until step i is reached for the first time
+        long[] offsets = new long[steps.length + 1];
+        for (int i = 0; i < steps.length; i++){
+            AndroidAnimationBuilder.AnimationStep step = steps[i];
+            if (step instanceof AndroidAnimationBuilder.LoopStep){
+                AndroidAnimationBuilder.LoopStep loop = (AndroidAnimationBuilder.LoopStep) step;
+                if (loop.repeats == AndroidAnimationBuilder.LoopStep.FOREVER) return INFINITE_DURATION;
+                offsets[i+1] = offsets[i] + (offsets[i] - offsets[loop.target]) * loop.repeats;
+            } else {
+                offsets[i+1] = offsets[i] + step.durationMs;
+            }
+        }
+        return offsets[steps.length];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AnimationTemplate)) return false;
+
+        AnimationTemplate other = (AnimationTemplate) o;
+        return hashCode == other.hashCode
+                && startClean == other.startClean
+                && autoCancel == other.autoCancel
+                && allowLayerAdjustmentForAnimation == other.allowLayerAdjustmentForAnimation
+                && optimizeChain == other.optimizeChain
+                && engine == other.engine
+                && suspendPolicy == other.suspendPolicy
+                && priority == other.priority
+                && metricsListener == other.metricsListener
+                && Arrays.equals(steps, other.steps)
+                && Arrays.equals(parallelTracks, other.parallelTracks);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.animation.Animator;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewPropertyAnimator;
+import android.view.animation.Interpolator;
+
+import static com.komaxx.androidanimationbuilder.AndroidAnimationBuilder.DEBUG_LOGGING;
+
+/**
+ * Plays the steps one after the other, each with its own {@link ViewPropertyAnimator}
+ * run. See {@link AndroidAnimationBuilder.Engine#VIEW_PROPERTY_ANIMATOR}.
+ */
+final class AnimatorRun extends AnimationRun implements Animator.AnimatorListener {
+    /**
+     * Everything the run needs from the platform: The clock, the view's message
+     * queue and its ViewPropertyAnimator. The {@link FrameSimulator} replaces it
+     * to play the steps against its virtual clock.
+     */
+    interface Host {
+        long nanoTime();
+
+        void postDelayed(@NonNull View view, @NonNull Runnable action, long delayMs);
+
+        void removeCallbacks(@NonNull View view, @NonNull Runnable action);
+
+        /**
+         * Animates the properties in the mask to their values in 'to'. Reports
+         * the end to the listener.
+         */
+        void animate(@NonNull View view, int mask, @NonNull float[] to, @NonNull Interpolator interpolator,
+                     long durationMs, @NonNull Animator.AnimatorListener listener);
+
+        /**
+         * Stops the running animation without reporting back.
+         */
+        void stopAnimation(@NonNull View view);
+    }
+
+    /**
+     * The real thing: System time, the view's handler and ViewPropertyAnimators.
+     */
+    static final Host FRAMEWORK = new Host() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void postDelayed(@NonNull View view, @NonNull Runnable action, long delayMs) {
+            view.postDelayed(action, delayMs);
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull View view, @NonNull Runnable action) {
+            view.removeCallbacks(action);
+        }
+
+        @Override
+        public void animate(@NonNull View view, int mask, @NonNull float[] to, @NonNull Interpolator interpolator,
+                            long durationMs, @NonNull Animator.AnimatorListener listener) {
+            ViewPropertyAnimator animate = view.animate();
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if ((mask & (1 << i)) != 0) ViewProperties.animate(animate, i, to[i]);
+            }
+            animate.setInterpolator(interpolator);
+            animate.setDuration(durationMs);
+            animate.setListener(listener);
+            animate.start();
+        }
+
+        @Override
+        public void stopAnimation(@NonNull View view) {
+            ViewPropertyAnimator animate = view.animate();
+            animate.setListener(null);
+            animate.cancel();
+        }
+    };
+
+    private final Host host;
+
+    /**
+     * Some old devices will call onAnimationEnd more than once! This field
+     * ensures that post-steps and further steps will be run only once.
+     */
+    private boolean stepAlreadyFinished = false;
+
+    /**
+     * Set while a ViewPropertyAnimator of this run is running.
+     */
+    private boolean animatorRunning = false;
+
+    private int nextStepIndex;
+
+    // animated properties of the current step, and when it started
+    private int animatedMask;
+    private long stepStartNanos;
+    /**
+     * How far the current step got when the run was suspended.
+     */
+    private long suspendedAfterNanos;
+    /**
+     * Summed up duration of all steps finished so far.
+     */
+    private long finishedStepsMs;
+
+    // values of the view when the current step started, and its targets
+    private final float[] from = new float[ViewProperties.COUNT];
+    private final float[] to = new float[ViewProperties.COUNT];
+
+    // Reused for all steps, so that playing a step does not allocate.
+    private final Runnable finishStepRunnable = new Runnable() {
+        @Override  public void run() {
+            stepFinished();
+        }
+    };
+    private final Runnable nextStepRunnable = new Runnable() {
+        @Override public void run() {
+            executeStep(nextStepIndex);
+        }
+    };
+
+    AnimatorRun(@NonNull AnimationTemplate template, @NonNull View view) {
+        this(template, view, FRAMEWORK);
+    }
+
+    AnimatorRun(@NonNull AnimationTemplate template, @NonNull View view, @NonNull Host host) {
+        super(template, view);
+        this.host = host;
+    }
+
+    @Override
+    void onStart(@NonNull View view) {
+        executeStep(0);
+    }
+
+    @Override
+    void onCancel(@Nullable View view) {
+        if (view == null) return;
+
+        host.removeCallbacks(view, finishStepRunnable);
+        host.removeCallbacks(view, nextStepRunnable);
+        stopAnimator(view);
+    }
+
+    @Override
+    void onSuspend(@NonNull View view) {
+        onCancel(view);
+        suspendedAfterNanos = host.nanoTime() - stepStartNanos;
+    }
+
+    /**
+     * Only when played with the real platform. Simulated runs are driven by
+     * the {@link FrameSimulator}.
+     */
+    @Override
+    boolean isSelfDriven() {
+        return host == FRAMEWORK;
+    }
+
+    @Override
+    void onResume(@NonNull View view) {
+        if (currentStepIndex < 0 || stepAlreadyFinished){
+            // suspended between two steps
+            executeStep(nextStepIndex);
+            return;
+        }
+
+        // continue the current step with the time it had left
+        AndroidAnimationBuilder.AnimationStep step = template.steps[currentStepIndex];
+        long remainingMs = Math.max(1, step.durationMs - suspendedAfterNanos / 1000000L);
+        stepStartNanos = host.nanoTime() - suspendedAfterNanos;
+        if (animatedMask != 0){
+            startAnimator(view, step, remainingMs);
+        } else {
+            host.postDelayed(view, finishStepRunnable, remainingMs);
+        }
+    }
+
+    @Override
+    void completeCurrentStep(@NonNull View view) {
+        if (currentStepIndex < 0 || stepAlreadyFinished) return;
+        stepAlreadyFinished = true;
+        finishedStepsMs += template.steps[currentStepIndex].durationMs;
+
+        for (int i = 0; i < ViewProperties.COUNT; i++){
+            if ((animatedMask & (1 << i)) != 0) ViewProperties.set(view, i, to[i]);
+        }
+        AndroidAnimationBuilder.AnimationStep step = template.steps[currentStepIndex];
+        step.applyCustomTargets(view, startState);
+        if (step.postStep != null) step.postStep.run(view);
+    }
+
+    @Override
+    long getPositionMs() {
+        if (currentStepIndex < 0 || stepAlreadyFinished) return finishedStepsMs;
+
+        long inStepNanos = isSuspended() ? suspendedAfterNanos : host.nanoTime() - stepStartNanos;
+        return finishedStepsMs + Math.min(template.steps[currentStepIndex].durationMs, inStepNanos / 1000000L);
+    }
+
+    /**
+     * Where the current step starts on the planned timeline, i.e., the summed
+     * up durations of the steps played before. -1 between two steps.
+     */
+    long getPlannedStepStartMs() {
+        if (currentStepIndex < 0 || stepAlreadyFinished) return -1;
+        return finishedStepsMs;
+    }
+
+    /**
+     * Stops the ViewPropertyAnimator without it reporting back, i.e., without
+     * canceling the run.
+     */
+    private void stopAnimator(@NonNull View view) {
+        if (!animatorRunning) return;
+        animatorRunning = false;
+        host.stopAnimation(view);
+    }
+
+    private void executeStep(int index) {
+        View visibleView = viewRef.get();
+        if (visibleView != null && suspendIfHidden(visibleView)){
+            // continues (or skips) from here later on
+            nextStepIndex = index;
+            return;
+        }
+
+        index = resolveStepIndex(index);
+        if (index >= template.steps.length){
+            View view = viewRef.get();
+            if (view != null) finish(view);
+            return;
+        }
+
+        View view = getViewIfStillOwned();
+        if (view == null) return;
+
+        if (template.steps[index] instanceof AndroidAnimationBuilder.AsyncStep){
+            // nothing to animate, resuming continues with the next step
+            currentStepIndex = index;
+            stepAlreadyFinished = true;
+            nextStepIndex = index + 1;
+            updateLayerForStep(view, false);
+            if (!awaitAsync(view, (AndroidAnimationBuilder.AsyncStep) template.steps[index])){
+                host.postDelayed(view, nextStepRunnable, 0);
+            }
+            return;
+        }
+
+        currentStepIndex = index;
+        stepAlreadyFinished = false;
+        stepStartNanos = host.nanoTime();
+        AndroidAnimationBuilder.AnimationStep step = template.steps[index];
+
+        if (metrics != null){
+            metrics.stepStarted(metricsTrack, index, stepStartNanos);
+            metrics.beginStepEntry(metricsTrack, index);
+        }
+
+        if (step.preStep != null){
+            step.preStep.run(view);
+        }
+
+        ViewProperties.read(view, from);
+        animatedMask = step.resolveTargets(from, to, startState, template.optimizeChain);
+
+        updateLayerForStep(view, animatedMask != 0);
+        if (animatedMask != 0){
+            startAnimator(view, step, step.durationMs);
+        } else {
+            host.postDelayed(view, finishStepRunnable, step.durationMs);
+        }
+
+        if (metrics != null) metrics.endStepEntry();
+    }
+
+    private void startAnimator(@NonNull View view, @NonNull AndroidAnimationBuilder.AnimationStep step,
+                               long durationMs) {
+        animatorRunning = true;
+        host.animate(view, animatedMask, to, step.getInterpolatorOrDefault(), durationMs, this);
+    }
+
+    /**
+     * Called when the current step was finished.
+     */
+    private void stepFinished() {
+        animatorRunning = false;
+        if (canceled){
+            if (DEBUG_LOGGING) {
+                Log.i("AndroidAnimationBuilder", "NOT processing step end: Already canceled!");
+            }
+            return;
+        }
+
+        if (stepAlreadyFinished){
+            if (DEBUG_LOGGING) {
+                Log.i("AndroidAnimationBuilder", "NOT re-notifying step end: Already ended!");
+            }
+            return;
+        }
+        stepAlreadyFinished = true;
+        finishedStepsMs += template.steps[currentStepIndex].durationMs;
+
+        View view = viewRef.get();
+        if (view == null){
+            if (DEBUG_LOGGING){
+                Log.i("AndroidAnimationBuilder", "Aborting animation step when scheduling next step: View was cleaned up");
+            }
+            return;
+        }
+
+        if (metrics != null) metrics.stepFinished(metricsTrack, host.nanoTime());
+
+        AndroidAnimationBuilder.AnimationStep step = template.steps[currentStepIndex];
+        // ViewPropertyAnimators only know view properties: custom ones jump
+        // (only played here before API 16, see AnimationTemplate#createRun)
+        step.applyCustomTargets(view, startState);
+        if (step.postStep != null) step.postStep.run(view);
+
+        nextStepIndex = currentStepIndex + 1;
+        host.postDelayed(view, nextStepRunnable, 1);
+    }
+
+    @Override  public void onAnimationEnd(Animator animator) {
+        stepFinished();
+    }
+
+    @Override  public void onAnimationStart(Animator animator) {}
+    @Override  public void onAnimationCancel(Animator animator) {
+        animatorRunning = false;
+        cancel();
+    }
+    @Override  public void onAnimationRepeat(Animator animator) {}
+}
@@ -0,0 +1,119 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One wait of a run for the background work of an {@link AndroidAnimationBuilder.AsyncStep}.
+ * Runs the work on the step's executor and reports back on the main thread,
+ * exactly once: With the result, or as failed when the work threw or the
+ * timeout was hit first. Only holds the run, which holds the view weakly.
+ */
+final class AsyncWait implements Runnable {
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final AnimationRun owner;
+    final AndroidAnimationBuilder.AsyncStep step;
+
+    /**
+     * Set by whoever comes first: The work, the timeout, or the run giving up.
+     */
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    private final Runnable timeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!completed.compareAndSet(false, true)) return;
+            Log.w("AndroidAnimationBuilder", "Async hook timed out after " + step.timeoutMs
+                    + "ms, continuing with the fallback.");
+            owner.asyncDone(AsyncWait.this, false, null);
+        }
+    };
+
+    AsyncWait(@NonNull AnimationRun owner, @NonNull AndroidAnimationBuilder.AsyncStep step) {
+        this.owner = owner;
+        this.step = step;
+    }
+
+    /**
+     * Hands the work to the executor. Main thread only.
+     */
+    void start() {
+        mainHandler.postDelayed(timeoutRunnable, step.timeoutMs);
+        try {
+            step.executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            Log.w("AndroidAnimationBuilder", "Async hook rejected by its executor", e);
+            report(false, null);
+        }
+    }
+
+    /**
+     * Called on the executor.
+     */
+    @Override
+    public void run() {
+        Object result;
+        try {
+            result = step.hook.doInBackground();
+        } catch (Exception e) {
+            Log.w("AndroidAnimationBuilder", "Async hook failed, continuing with the fallback", e);
+            report(false, null);
+            return;
+        }
+        report(true, result);
+    }
+
+    private void report(final boolean success, @Nullable final Object result) {
+        if (!completed.compareAndSet(false, true)) return;
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mainHandler.removeCallbacks(timeoutRunnable);
+                owner.asyncDone(AsyncWait.this, success, result);
+            }
+        });
+    }
+
+    /**
+     * The run no longer waits (canceled or skipped): Whatever comes later is
+     * dropped. Main thread only.
+     */
+    void abandon() {
+        completed.set(true);
+        mainHandler.removeCallbacks(timeoutRunnable);
+    }
+}
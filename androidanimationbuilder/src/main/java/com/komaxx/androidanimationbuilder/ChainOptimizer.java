@@ -0,0 +1,172 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Rewrites a chain of steps before it is compiled, without changing what is
+ * visible on screen:
+ * <ul>
+ *     <li>Consecutive steps without animation (pauses, hook-only steps) are
+ *     merged into one, as long as no hook would be moved.</li>
+ *     <li>Hook-only steps of (almost) zero duration are folded into the end of
+ *     the step before, so their hooks run at the very same boundary without a
+ *     step dispatch of their own.</li>
+ * </ul>
+ * Targets that are already reached are dropped when a step is entered, see
+ * {@link AndroidAnimationBuilder.AnimationStep#resolveTargets}.
+ */
+final class ChainOptimizer {
+    /**
+     * Hook-only steps up to this duration are considered to take no time.
+     * Shorter steps can not be defined, see {@link AndroidAnimationBuilder#ms(int)}.
+     */
+    private static final int ZERO_DURATION_MS = 1;
+
+    private ChainOptimizer() { }
+
+    /**
+     * Optimizes the steps in place. Durations must already be set.
+     */
+    static void optimize(@NonNull ArrayList<AndroidAnimationBuilder.AnimationStep> steps) {
+        int count = steps.size();
+
+        // jumps must still land on the first step of their loop
+        boolean[] loopTargets = new boolean[count];
+        for (AndroidAnimationBuilder.AnimationStep step : steps) {
+            if (step instanceof AndroidAnimationBuilder.LoopStep){
+                loopTargets[((AndroidAnimationBuilder.LoopStep) step).target] = true;
+            }
+        }
+
+        ArrayList<AndroidAnimationBuilder.AnimationStep> optimized = new ArrayList<>(count);
+        int[] newIndices = new int[count];
+
+        for (int i = 0; i < count; i++){
+            AndroidAnimationBuilder.AnimationStep step = steps.get(i);
+            int lastIndex = optimized.size() - 1;
+            AndroidAnimationBuilder.AnimationStep last = lastIndex < 0 ? null : optimized.get(lastIndex);
+
+            if (last != null && !loopTargets[i]
+                    && !(last instanceof AndroidAnimationBuilder.LoopStep)
+                    && !(step instanceof AndroidAnimationBuilder.LoopStep)
+                    && !(last instanceof AndroidAnimationBuilder.AsyncStep)
+                    && !(step instanceof AndroidAnimationBuilder.AsyncStep)
+                    && !step.hasAnimation()){
+                AndroidAnimationBuilder.AnimationStep merged = null;
+
+                if (!last.hasAnimation() && last.postStep == null && step.preStep == null){
+                    // two waits in a row: one longer wait
+                    merged = new AndroidAnimationBuilder.AnimationStep(last);
+                    merged.durationMs += step.durationMs;
+                    merged.postStep = step.postStep;
+                } else if (step.durationMs <= ZERO_DURATION_MS){
+                    // hooks only, no time: run them when the previous step ends
+                    merged = new AndroidAnimationBuilder.AnimationStep(last);
+                    merged.postStep = ChainedHook.chain(last.postStep, step.preStep, step.postStep);
+                }
+
+                if (merged != null){
+                    optimized.set(lastIndex, merged);
+                    newIndices[i] = lastIndex;
+                    continue;
+                }
+            }
+
+            newIndices[i] = optimized.size();
+            optimized.add(step);
+        }
+
+        // loop targets moved when steps before them were merged
+        for (int i = 0; i < optimized.size(); i++){
+            AndroidAnimationBuilder.AnimationStep step = optimized.get(i);
+            if (step instanceof AndroidAnimationBuilder.LoopStep){
+                AndroidAnimationBuilder.LoopStep loop = (AndroidAnimationBuilder.LoopStep) step;
+                optimized.set(i, new AndroidAnimationBuilder.LoopStep(newIndices[loop.target], loop.repeats));
+            }
+        }
+
+        steps.clear();
+        steps.addAll(optimized);
+    }
+
+    /**
+     * Runs several hooks in a row. Equal to another ChainedHook with the very
+     * same hooks, so optimized templates can still be found in the cache.
+     */
+    static final class ChainedHook implements AndroidAnimationBuilder.AnimationStepHook {
+        private final AndroidAnimationBuilder.AnimationStepHook[] hooks;
+
+        private ChainedHook(AndroidAnimationBuilder.AnimationStepHook[] hooks) {
+            this.hooks = hooks;
+        }
+
+        /**
+         * Combines the given hooks, skipping <code>null</code>s.
+         *
+         * @return  <code>null</code> when there is no hook at all, the hook itself
+         *          if there is only one.
+         */
+        @Nullable
+        static AndroidAnimationBuilder.AnimationStepHook chain(AndroidAnimationBuilder.AnimationStepHook... hooks) {
+            int count = 0;
+            for (AndroidAnimationBuilder.AnimationStepHook hook : hooks) {
+                if (hook != null) count++;
+            }
+            if (count == 0) return null;
+
+            AndroidAnimationBuilder.AnimationStepHook[] nonNull = new AndroidAnimationBuilder.AnimationStepHook[count];
+            int i = 0;
+            for (AndroidAnimationBuilder.AnimationStepHook hook : hooks) {
+                if (hook != null) nonNull[i++] = hook;
+            }
+            return count == 1 ? nonNull[0] : new ChainedHook(nonNull);
+        }
+
+        @Override
+        public void run(@NonNull View view) {
+            for (AndroidAnimationBuilder.AnimationStepHook hook : hooks) {
+                hook.run(view);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ChainedHook && Arrays.equals(hooks, ((ChainedHook) o).hooks);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(hooks);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Computes where an animation ends up without playing it, in one pass over the
+ * steps. Each step (and each loop) is folded into a transform per property that
+ * either keeps, sets, or adds to the value, so repetitions cost nothing:
+ * A loop's transform is simply applied 'times' times in closed form.
+ * <br/>
+ * Hooks are code and can not be folded, they are left out. To apply the end
+ * state to a view with all hooks, see {@link AnimationTemplate#applyEndState(android.view.View)}.
+ */
+final class EndStateEvaluator {
+    private static final byte KEEP = 0;
+    private static final byte SET = 1;
+    private static final byte ADD = 2;
+
+    private EndStateEvaluator() { }
+
+    /**
+     * @param state The values when the animation starts (after cleaning, if
+     *              the template starts clean). Receives the end values.
+     */
+    static void fold(@NonNull AnimationTemplate template, @NonNull float[] state) {
+        float[] start = state.clone();
+        // like when playing: the track ending last wins
+        for (int t : template.trackOrder) {
+            foldTrack(t == 0 ? template : template.parallelTracks[t - 1], start, state);
+        }
+    }
+
+    private static void foldTrack(AnimationTemplate template, float[] start, float[] state) {
+        AndroidAnimationBuilder.AnimationStep[] steps = template.steps;
+
+        // transforms of consecutive ranges of steps, and where each range starts
+        ArrayList<Transform> segments = new ArrayList<>();
+        ArrayList<Integer> segmentStarts = new ArrayList<>();
+
+        for (int i = 0; i < steps.length; i++){
+            AndroidAnimationBuilder.AnimationStep step = steps[i];
+            if (!(step instanceof AndroidAnimationBuilder.LoopStep)){
+                segments.add(Transform.of(step, start));
+                segmentStarts.add(i);
+                continue;
+            }
+
+            AndroidAnimationBuilder.LoopStep loop = (AndroidAnimationBuilder.LoopStep) step;
+            // endless: the end state is the one when jumping back for the first time
+            if (loop.repeats == AndroidAnimationBuilder.LoopStep.FOREVER) break;
+
+            // loops are nested properly, so the loop's range consists of whole segments
+            int first = segments.size();
+            while (first > 0 && segmentStarts.get(first - 1) >= loop.target) first--;
+            if (first == segments.size()) continue;
+
+            Transform body = segments.get(first);
+            for (int s = first + 1; s < segments.size(); s++){
+                body.then(segments.get(s));
+            }
+            body.repeat(loop.repeats + 1);
+
+            while (segments.size() > first + 1){
+                segments.remove(segments.size() - 1);
+                segmentStarts.remove(segmentStarts.size() - 1);
+            }
+            segmentStarts.set(first, loop.target);
+        }
+
+        for (int s = 0; s < segments.size(); s++){
+            segments.get(s).applyTo(state);
+        }
+    }
+
+    /**
+     * What a range of steps does to each view property.
+     */
+    private static final class Transform {
+        final byte[] modes = new byte[ViewProperties.COUNT];
+        final float[] values = new float[ViewProperties.COUNT];
+
+        /**
+         * Mirrors {@link AndroidAnimationBuilder.AnimationStep#resolveTargets}.
+         */
+        static Transform of(AndroidAnimationBuilder.AnimationStep step, float[] start) {
+            Transform transform = new Transform();
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if (step.isSet(i)){
+                    transform.set(i, SET, step.values[i]);
+                } else if (step.isSet(ViewProperties.COUNT + i)){
+                    transform.set(i, ADD, step.byValues[i]);
+                } else if (step.resetting){
+                    transform.set(i, SET, start[i]);
+                }
+            }
+
+            if (step.path != null){
+                transform.set(ViewProperties.TRANSLATION_X, SET, step.path.getEndX());
+                transform.set(ViewProperties.TRANSLATION_Y, SET, step.path.getEndY());
+                if (step.rotateAlongPath){
+                    transform.set(ViewProperties.ROTATION, SET, step.path.getEndAngle());
+                }
+            }
+            return transform;
+        }
+
+        private void set(int index, byte mode, float value) {
+            modes[index] = mode;
+            values[index] = value;
+        }
+
+        /**
+         * Appends the given transform to this one.
+         */
+        void then(Transform next) {
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                switch (next.modes[i]){
+                    case SET:
+                        set(i, SET, next.values[i]);
+                        break;
+                    case ADD:
+                        if (modes[i] == KEEP) set(i, ADD, next.values[i]);
+                        else values[i] += next.values[i];
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Makes this transform do what applying it 'times' times in a row does.
+         */
+        void repeat(int times) {
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if (modes[i] == ADD) values[i] *= times;
+            }
+        }
+
+        void applyTo(float[] state) {
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if (modes[i] == SET) state[i] = values[i];
+                else if (modes[i] == ADD) state[i] += values[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Base of all runs that are driven frame by frame by a {@link Choreographer}
+ * frame callback, instead of by ViewPropertyAnimators. Either requests its
+ * frames itself, or gets them delivered by an owner (e.g., a group of runs)
+ * via {@link #onFrame(long)}.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+abstract class FrameDrivenRun extends AnimationRun implements Choreographer.FrameCallback {
+    static final long NANOS_PER_MS = 1000000L;
+
+    /**
+     * Frame time of the first frame, i.e., the timeline's zero. Negative
+     * until the first frame was rendered.
+     */
+    long startTimeNanos = -1;
+
+    /**
+     * When set, frames are not requested by the run itself but delivered
+     * by the owner via {@link #onFrame(long)}.
+     */
+    private final boolean externallyDriven;
+
+    private Choreographer choreographer;
+
+    /**
+     * Time of the last frame played, to continue seamlessly after a suspension.
+     */
+    private long lastFrameTimeNanos = -1;
+    private boolean resumePending = false;
+
+    private int frameCount = 0;
+
+    FrameDrivenRun(@NonNull AnimationTemplate template, @NonNull View view, boolean externallyDriven) {
+        super(template, view);
+        this.externallyDriven = externallyDriven;
+    }
+
+    @Override
+    final void onStart(@NonNull View view) {
+        prepare(view);
+
+        if (!externallyDriven){
+            choreographer = Choreographer.getInstance();
+            // when waiting right away, the async hook's completion posts the first frame
+            if (!isAwaitingAsync()) choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Called when the run starts, before the first frame.
+     */
+    abstract void prepare(@NonNull View view);
+
+    @Override
+    void onCancel(@Nullable View view) {
+        if (choreographer != null){
+            choreographer.removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    boolean isSelfDriven() {
+        return !externallyDriven;
+    }
+
+    @Override
+    void onSuspend(@NonNull View view) {
+        onCancel(view);
+    }
+
+    @Override
+    void onResume(@NonNull View view) {
+        resumePending = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    /**
+     * Moves the timeline's zero, e.g., to skip the time the run was suspended.
+     */
+    void shiftStartTime(long deltaNanos) {
+        if (startTimeNanos >= 0) startTimeNanos += deltaNanos;
+    }
+
+    /**
+     * Sets the timeline's zero explicitly instead of using the first frame.
+     */
+    void setStartTime(long startTimeNanos) {
+        this.startTimeNanos = startTimeNanos;
+    }
+
+    @Override
+    long getPositionMs() {
+        if (startTimeNanos < 0 || lastFrameTimeNanos < 0) return 0;
+        return (lastFrameTimeNanos - startTimeNanos) / NANOS_PER_MS;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (onFrame(frameTimeNanos)){
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Brings the run to the given frame time.
+     *
+     * @return  <code>true</code> when the run wants another frame.
+     */
+    boolean onFrame(long frameTimeNanos) {
+        if (canceled || done) return false;
+
+        View view = getViewIfStillOwned();
+        if (view == null) return false;
+        if (suspendIfHidden(view)) return false;
+
+        if (resumePending){
+            // the first frame after the suspension continues the last one
+            resumePending = false;
+            if (lastFrameTimeNanos >= 0) shiftStartTime(frameTimeNanos - lastFrameTimeNanos);
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        if (startTimeNanos < 0) startTimeNanos = frameTimeNanos;
+
+        // under pressure, the budget may thin out the updates
+        if (budgeted && AnimationBudget.skipsFrame(this, frameCount++)) return true;
+
+        return advance(view, frameTimeNanos);
+    }
+
+    /**
+     * Brings the view to the state at the given frame time.
+     *
+     * @return  <code>false</code> when the animation is done or was aborted.
+     */
+    abstract boolean advance(@NonNull View view, long frameTimeNanos);
+
+    /**
+     * The step currently played. For parallel runs: Of the first track.
+     */
+    abstract int getCurrentStepIndex();
+
+    /**
+     * Start of the current step in ns, relative to the timeline's zero.
+     * For parallel runs: Of the first track.
+     */
+    abstract long getStepStartNanos();
+}
@@ -0,0 +1,569 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.animation.Animator;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Plays an {@link AnimationTemplate} against a virtual clock with a virtual vsync,
+ * instead of real time. Runs the actual engine the template uses on API level 16+,
+ * frame by frame, as fast as possible and records the view's properties after
+ * every frame. Meant for deterministic regression tests of animation timing,
+ * e.g., with a Robolectric view, so no emulator is required.
+ * </p>
+ * <p>
+ * The {@link AndroidAnimationBuilder.Engine#VIEW_PROPERTY_ANIMATOR} engine gets
+ * virtual stand-ins for the view's message queue and its ViewPropertyAnimator:
+ * Posted runnables run at their due time between two vsyncs, an animation starts
+ * with the first vsync after it was started and ends with the first vsync at or
+ * after its duration, like the framework's animators do.
+ * </p>
+ *
+ * Exemplary usage:
+ * <pre>
+ *      FrameSimulator.Report report = new FrameSimulator(template)
+ *             .setFrameIntervalMs(16)
+ *             .dropFrames(10, 11)
+ *             .run(view);
+ *
+ *      assertEquals(0, report.getGaps().size());
+ *      assertEquals(0, report.getStalledFrames().size());
+ *      assertTrue(Math.abs(report.getDurationDriftMs()) &lt;= 16);
+ * </pre>
+ *
+ * Hooks are executed as usual. The simulation is synchronous and must be
+ * run on the thread that owns the view.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class FrameSimulator {
+    private static final long NANOS_PER_MS = 1000000L;
+
+    private final AnimationTemplate template;
+
+    private float frameIntervalMs = 1000f / 60;
+    private int[] droppedFrames = new int[0];
+    private int maxFrames = 100000;
+
+    public FrameSimulator(@NonNull AnimationTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Time between two virtual vsyncs. Default: 60 fps.
+     */
+    public FrameSimulator setFrameIntervalMs(float frameIntervalMs) {
+        if (frameIntervalMs <= 0){
+            throw new IllegalArgumentException("Frame interval must be positive, got " + frameIntervalMs);
+        }
+        this.frameIntervalMs = frameIntervalMs;
+        return this;
+    }
+
+    /**
+     * Simulates jank: The frames with the given indices (0 being the first frame
+     * of the animation) are not rendered, the vsync passes without a frame callback.
+     */
+    public FrameSimulator dropFrames(int... frameIndices) {
+        droppedFrames = frameIndices.clone();
+        Arrays.sort(droppedFrames);
+        return this;
+    }
+
+    /**
+     * Upper bound of simulated frames, e.g., for templates that loop forever.
+     * The simulation is stopped after this number of frames. Default: 100000
+     */
+    public FrameSimulator setMaxFrames(int maxFrames) {
+        this.maxFrames = maxFrames;
+        return this;
+    }
+
+    /**
+     * Plays the whole template on the view and reports every frame.
+     */
+    @NonNull
+    public Report run(@NonNull View view) {
+        Report report = new Report(template, frameIntervalMs);
+        if (template.steps.length < 1){
+            report.endMs = 0;
+            return report;
+        }
+
+        if (template.engine == AndroidAnimationBuilder.Engine.VIEW_PROPERTY_ANIMATOR
+                && !template.needsFrameEvaluation){
+            runAnimators(view, report);
+        } else {
+            runTimeline(view, report);
+        }
+        return report;
+    }
+
+    private void runTimeline(@NonNull View view, @NonNull Report report) {
+        FrameDrivenRun run = template.createFrameDrivenRun(view, true);
+        run.start();
+        IdealTimeline ideal = new IdealTimeline(template, run.startState);
+        long frameIntervalNanos = (long) (frameIntervalMs * NANOS_PER_MS);
+        long visitedStepStartNanos = -1;
+
+        for (int i = 0; i < maxFrames; i++){
+            long frameTimeNanos = i * frameIntervalNanos;
+            float frameTimeMs = frameTimeNanos / (float) NANOS_PER_MS;
+
+            if (Arrays.binarySearch(droppedFrames, i) >= 0){
+                report.frames.add(new Frame(i, frameTimeMs, -1, null, true, false));
+                continue;
+            }
+
+            boolean running = run.onFrame(frameTimeNanos);
+
+            int stepIndex = running ? run.getCurrentStepIndex() : -1;
+            addFrame(report, ideal, view, i, frameTimeNanos, stepIndex);
+
+            if (!running){
+                report.endMs = frameTimeMs;
+                break;
+            }
+
+            // each repetition of a step in a loop is a separate visit
+            long stepStartNanos = run.getStepStartNanos();
+            if (stepStartNanos != visitedStepStartNanos){
+                visitedStepStartNanos = stepStartNanos;
+                report.stepVisits.add(new StepVisit(stepIndex,
+                        stepStartNanos / (float) NANOS_PER_MS, frameTimeMs));
+            }
+        }
+
+        if (run.isRunning()) run.cancel();
+    }
+
+    private void runAnimators(@NonNull View view, @NonNull Report report) {
+        VirtualHost host = new VirtualHost();
+        AnimatorRun run = new AnimatorRun(template, view, host);
+        run.start();
+        IdealTimeline ideal = new IdealTimeline(template, run.startState);
+        long frameIntervalNanos = (long) (frameIntervalMs * NANOS_PER_MS);
+        long visitedStepStartMs = -1;
+
+        for (int i = 0; i < maxFrames; i++){
+            long frameTimeNanos = i * frameIntervalNanos;
+            float frameTimeMs = frameTimeNanos / (float) NANOS_PER_MS;
+
+            // the main thread works off its queue between two frames
+            host.runPosted(frameTimeNanos);
+            if (!run.isRunning()){
+                report.endMs = host.nowNanos / (float) NANOS_PER_MS;
+                break;
+            }
+            host.nowNanos = frameTimeNanos;
+
+            if (Arrays.binarySearch(droppedFrames, i) >= 0){
+                report.frames.add(new Frame(i, frameTimeMs, -1, null, true, false));
+                continue;
+            }
+
+            host.onFrame(frameTimeNanos);
+
+            // a post-step hook may have ended the run
+            boolean running = run.isRunning();
+            long stepStartMs = running ? run.getPlannedStepStartMs() : -1;
+            int stepIndex = stepStartMs >= 0 ? run.currentStepIndex : -1;
+            addFrame(report, ideal, view, i, frameTimeNanos, stepIndex);
+
+            if (!running){
+                report.endMs = frameTimeMs;
+                break;
+            }
+
+            // each repetition of a step in a loop is a separate visit
+            if (stepStartMs >= 0 && stepStartMs != visitedStepStartMs){
+                visitedStepStartMs = stepStartMs;
+                report.stepVisits.add(new StepVisit(stepIndex, stepStartMs, frameTimeMs));
+            }
+        }
+
+        if (run.isRunning()) run.cancel();
+    }
+
+    /**
+     * Records the view's properties after a rendered frame, and whether the
+     * view was stuck although the planned timeline moved on.
+     */
+    private static void addFrame(@NonNull Report report, @NonNull IdealTimeline ideal, @NonNull View view,
+                                 int index, long frameTimeNanos, int stepIndex) {
+        float[] values = new float[ViewProperties.COUNT];
+        ViewProperties.read(view, values);
+
+        Frame previous = report.getLastRenderedFrame();
+        boolean stalled = previous != null
+                && Arrays.equals(previous.values, values)
+                && ideal.moved((long) previous.timeMs, frameTimeNanos / NANOS_PER_MS);
+
+        report.frames.add(new Frame(index, frameTimeNanos / (float) NANOS_PER_MS, stepIndex, values, false, stalled));
+    }
+
+    /**
+     * Where the view should be at any time, according to the step durations:
+     * All tracks, unrolled from the run's start state.
+     */
+    private static final class IdealTimeline {
+        private final float[] startValues;
+        private final UnrolledTrack[] tracks;
+        private final int[] trackOrder;
+
+        private final float[] before = new float[ViewProperties.COUNT];
+        private final float[] after = new float[ViewProperties.COUNT];
+
+        IdealTimeline(@NonNull AnimationTemplate template, @NonNull AndroidAnimationBuilder.StartState startState) {
+            startValues = startState.values.clone();
+            AnimationTemplate[] parallelTracks = template.parallelTracks;
+            tracks = new UnrolledTrack[parallelTracks.length + 1];
+            tracks[0] = new UnrolledTrack(template, startState);
+            for (int i = 0; i < parallelTracks.length; i++){
+                tracks[i+1] = new UnrolledTrack(parallelTracks[i], startState);
+            }
+            trackOrder = template.trackOrder;
+        }
+
+        /**
+         * Whether any view property changes between the two points in time.
+         */
+        boolean moved(long fromMs, long toMs) {
+            evaluate(fromMs, before);
+            evaluate(toMs, after);
+            return !Arrays.equals(before, after);
+        }
+
+        private void evaluate(long ms, float[] into) {
+            System.arraycopy(startValues, 0, into, 0, ViewProperties.COUNT);
+            for (int t : trackOrder) {
+                tracks[t].evaluate(ms, into);
+            }
+        }
+    }
+
+    /**
+     * The view's message queue and its ViewPropertyAnimator, on the virtual clock.
+     * Serves one run, so there is at most one animation at a time.
+     */
+    private static final class VirtualHost implements AnimatorRun.Host {
+        long nowNanos = 0;
+
+        /**
+         * Posted runnables, ordered by due time. Same due time: In posting order.
+         */
+        private final ArrayList<Posted> posted = new ArrayList<>();
+
+        // the running animation, if any
+        @Nullable private View animatedView;
+        @Nullable private Animator.AnimatorListener listener;
+        private int animatedMask;
+        private final float[] from = new float[ViewProperties.COUNT];
+        private final float[] to = new float[ViewProperties.COUNT];
+        private Interpolator interpolator;
+        private long durationNanos;
+        /**
+         * Frame time of the animation's first frame, -1 before it.
+         */
+        private long startNanos;
+
+        @Override
+        public long nanoTime() {
+            return nowNanos;
+        }
+
+        @Override
+        public void postDelayed(@NonNull View view, @NonNull Runnable action, long delayMs) {
+            long dueNanos = nowNanos + delayMs * NANOS_PER_MS;
+            int index = posted.size();
+            while (index > 0 && posted.get(index - 1).dueNanos > dueNanos) index--;
+            posted.add(index, new Posted(dueNanos, action));
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull View view, @NonNull Runnable action) {
+            for (int i = posted.size() - 1; i >= 0; i--){
+                if (posted.get(i).action == action) posted.remove(i);
+            }
+        }
+
+        @Override
+        public void animate(@NonNull View view, int mask, @NonNull float[] to, @NonNull Interpolator interpolator,
+                            long durationMs, @NonNull Animator.AnimatorListener listener) {
+            animatedView = view;
+            this.listener = listener;
+            animatedMask = mask;
+            ViewProperties.read(view, from);
+            System.arraycopy(to, 0, this.to, 0, ViewProperties.COUNT);
+            this.interpolator = interpolator;
+            durationNanos = durationMs * NANOS_PER_MS;
+            startNanos = -1;
+        }
+
+        @Override
+        public void stopAnimation(@NonNull View view) {
+            animatedView = null;
+            listener = null;
+        }
+
+        /**
+         * Runs everything due up to the given time, each at its due time.
+         */
+        void runPosted(long untilNanos) {
+            while (!posted.isEmpty() && posted.get(0).dueNanos <= untilNanos){
+                Posted next = posted.remove(0);
+                nowNanos = Math.max(nowNanos, next.dueNanos);
+                next.action.run();
+            }
+        }
+
+        /**
+         * Moves the animation to the given frame time. The listener learns about
+         * the end without an Animator, i.e., gets <code>null</code>.
+         */
+        void onFrame(long frameTimeNanos) {
+            if (animatedView == null || listener == null) return;
+            if (startNanos < 0) startNanos = frameTimeNanos;
+
+            long elapsedNanos = frameTimeNanos - startNanos;
+            boolean ended = elapsedNanos >= durationNanos;
+            float interpolated = ended ? 1 : interpolator.getInterpolation(elapsedNanos / (float) durationNanos);
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if ((animatedMask & (1 << i)) == 0) continue;
+                float value = ended ? to[i] : from[i] + (to[i] - from[i]) * interpolated;
+                ViewProperties.set(animatedView, i, value);
+            }
+
+            if (ended){
+                Animator.AnimatorListener endedListener = listener;
+                animatedView = null;
+                listener = null;
+                endedListener.onAnimationEnd(null);
+            }
+        }
+
+        private static final class Posted {
+            final long dueNanos;
+            final Runnable action;
+
+            Posted(long dueNanos, Runnable action) {
+                this.dueNanos = dueNanos;
+                this.action = action;
+            }
+        }
+    }
+
+    /**
+     * One step being visible in frames for the first time. A step in a loop
+     * is visited once per repetition.
+     */
+    public static final class StepVisit {
+        public final int stepIndex;
+        /**
+         * When the step should have started, relative to the start of the animation.
+         */
+        public final float plannedStartMs;
+        /**
+         * Time of the first frame rendered while the step was running.
+         */
+        public final float firstFrameMs;
+
+        StepVisit(int stepIndex, float plannedStartMs, float firstFrameMs) {
+            this.stepIndex = stepIndex;
+            this.plannedStartMs = plannedStartMs;
+            this.firstFrameMs = firstFrameMs;
+        }
+
+        /**
+         * How much later than planned the step was first seen in a frame.
+         * Anything up to one frame interval is inherent to frame based rendering.
+         */
+        public float getStartDelayMs() {
+            return firstFrameMs - plannedStartMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Step " + stepIndex + " planned @" + plannedStartMs + "ms, first frame @" + firstFrameMs + "ms";
+        }
+    }
+
+    /**
+     * One simulated vsync.
+     */
+    public static final class Frame {
+        public final int index;
+        public final float timeMs;
+        /**
+         * The step running after the frame was rendered. -1 for dropped frames,
+         * the frame that finished the animation, and frames between two steps.
+         */
+        public final int stepIndex;
+        /**
+         * The view's rotation, translationX/Y/Z, scaleX/Y and alpha (in this order)
+         * after the frame. <code>null</code> for dropped frames.
+         */
+        public final float[] values;
+        public final boolean dropped;
+        /**
+         * The frame was rendered, but the view did not move since the last
+         * rendered frame although it should have: The engine lost the frame.
+         */
+        public final boolean stalled;
+
+        Frame(int index, float timeMs, int stepIndex, float[] values, boolean dropped, boolean stalled) {
+            this.index = index;
+            this.timeMs = timeMs;
+            this.stepIndex = stepIndex;
+            this.values = values;
+            this.dropped = dropped;
+            this.stalled = stalled;
+        }
+
+        @Override
+        public String toString() {
+            return "Frame " + index + " @" + timeMs + "ms"
+                    + (dropped ? ": DROPPED" : ", step " + stepIndex + ": " + Arrays.toString(values))
+                    + (stalled ? " STALLED" : "");
+        }
+    }
+
+    /**
+     * The outcome of a simulation.
+     */
+    public static final class Report {
+        private final AnimationTemplate template;
+        private final float frameIntervalMs;
+
+        final List<Frame> frames = new ArrayList<>();
+        final List<StepVisit> stepVisits = new ArrayList<>();
+        float endMs = -1;
+
+        Report(@NonNull AnimationTemplate template, float frameIntervalMs) {
+            this.template = template;
+            this.frameIntervalMs = frameIntervalMs;
+        }
+
+        public List<Frame> getFrames() {
+            return Collections.unmodifiableList(frames);
+        }
+
+        /**
+         * All steps in the order they were visible for the first time. Steps
+         * that ended between two frames are not visited.
+         */
+        public List<StepVisit> getStepVisits() {
+            return Collections.unmodifiableList(stepVisits);
+        }
+
+        /**
+         * Frames not rendered at all, see {@link #dropFrames(int...)}.
+         */
+        public int getDroppedFrameCount() {
+            int count = 0;
+            for (Frame frame : frames) {
+                if (frame.dropped) count++;
+            }
+            return count;
+        }
+
+        /**
+         * Frames that were rendered without the view moving, although the step
+         * durations say it should have: E.g., an animator waiting for its first
+         * frame after the previous step ended.
+         */
+        public List<Frame> getStalledFrames() {
+            List<Frame> ret = new ArrayList<>();
+            for (Frame frame : frames) {
+                if (frame.stalled) ret.add(frame);
+            }
+            return ret;
+        }
+
+        @Nullable
+        Frame getLastRenderedFrame() {
+            for (int i = frames.size() - 1; i >= 0; i--){
+                if (!frames.get(i).dropped) return frames.get(i);
+            }
+            return null;
+        }
+
+        /**
+         * All step visits that were seen for the first time more than one frame
+         * interval after their planned start, i.e., a frame was lost at the
+         * step boundary.
+         */
+        public List<StepVisit> getGaps() {
+            List<StepVisit> ret = new ArrayList<>();
+            for (StepVisit visit : stepVisits) {
+                if (visit.getStartDelayMs() > frameIntervalMs) ret.add(visit);
+            }
+            return ret;
+        }
+
+        /**
+         * Time of the frame that finished the animation. For the
+         * {@link AndroidAnimationBuilder.Engine#VIEW_PROPERTY_ANIMATOR} engine,
+         * when the run ended, which may be between two frames. -1 if it did not finish.
+         */
+        public float getEndMs() {
+            return endMs;
+        }
+
+        /**
+         * Difference between the time the animation actually finished and its
+         * planned duration. Anything up to one frame interval is inherent to frame
+         * based rendering. NaN when the animation did not finish in the simulation.
+         */
+        public float getDurationDriftMs() {
+            long totalDurationMs = template.getTotalDurationMs();
+            if (endMs < 0 || totalDurationMs == AnimationTemplate.INFINITE_DURATION) return Float.NaN;
+            return endMs - totalDurationMs;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Frame frame : frames) {
+                sb.append(frame).append('\n');
+            }
+            sb.append("Dropped frames: ").append(getDroppedFrameCount())
+                    .append(", stalled frames: ").append(getStalledFrames().size())
+                    .append(", gaps: ").append(getGaps())
+                    .append(", duration drift: ").append(getDurationDriftMs()).append("ms");
+            return sb.toString();
+        }
+    }
+}
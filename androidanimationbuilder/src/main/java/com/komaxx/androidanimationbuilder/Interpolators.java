@@ -0,0 +1,127 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shared interpolator instances, and "baking" of arbitrary interpolators into
+ * lookup tables. Interpolators are stateless, so there is no need to
+ * allocate new ones for every animation step.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Interpolators {
+    /**
+     * Number of samples taken when baking an interpolator without an explicit
+     * sample count. Enough to keep the error below 1e-5 for the framework's
+     * curves.
+     */
+    public static final int DEFAULT_SAMPLE_COUNT = 256;
+
+    public static final Interpolator ACCELERATE_DECELERATE = new AccelerateDecelerateInterpolator();
+    public static final Interpolator ACCELERATE = new AccelerateInterpolator();
+    public static final Interpolator DECELERATE = new DecelerateInterpolator();
+    public static final Interpolator LINEAR = new LinearInterpolator();
+
+    private static final Map<Interpolator, BakedInterpolator> bakedCache = new WeakHashMap<>();
+
+    private Interpolators() { }
+
+    /**
+     * Bakes the given interpolator with {@link #DEFAULT_SAMPLE_COUNT} samples.
+     * Baked versions are cached per interpolator instance, so baking the same
+     * (shared) interpolator again is free. Already baked interpolators are
+     * returned as they are.
+     */
+    @NonNull
+    public static BakedInterpolator bake(@NonNull Interpolator source) {
+        if (source instanceof BakedInterpolator) return (BakedInterpolator) source;
+
+        synchronized (bakedCache) {
+            BakedInterpolator baked = bakedCache.get(source);
+            if (baked == null){
+                baked = new BakedInterpolator(source, DEFAULT_SAMPLE_COUNT);
+                bakedCache.put(source, baked);
+            }
+            return baked;
+        }
+    }
+
+    /**
+     * Bakes the given interpolator with the given number of samples. Not cached.
+     */
+    @NonNull
+    public static BakedInterpolator bake(@NonNull Interpolator source, int sampleCount) {
+        return new BakedInterpolator(source, sampleCount);
+    }
+
+    /**
+     * An interpolator that was sampled into a fixed-size lookup table. Evaluating
+     * it costs one table lookup and one linear interpolation, no matter how
+     * expensive the original curve is.
+     */
+    public static final class BakedInterpolator implements Interpolator {
+        private final float[] table;
+        private final int segments;
+
+        BakedInterpolator(@NonNull Interpolator source, int sampleCount) {
+            if (sampleCount < 2){
+                throw new IllegalArgumentException("At least 2 samples are required, got " + sampleCount);
+            }
+            segments = sampleCount - 1;
+            table = new float[sampleCount];
+            for (int i = 0; i < sampleCount; i++){
+                table[i] = source.getInterpolation(i / (float) segments);
+            }
+        }
+
+        @Override
+        public float getInterpolation(float input) {
+            if (input <= 0) return table[0];
+            if (input >= 1) return table[segments];
+
+            float position = input * segments;
+            int index = (int) position;
+            float fraction = position - index;
+            return table[index] + (table[index + 1] - table[index]) * fraction;
+        }
+
+        /**
+         * Number of samples in the lookup table.
+         */
+        public int getSampleCount() {
+            return table.length;
+        }
+    }
+}
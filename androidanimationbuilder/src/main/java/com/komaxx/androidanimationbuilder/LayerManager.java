@@ -0,0 +1,78 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import java.util.WeakHashMap;
+
+/**
+ * Reference counts hardware layer usage per view. The first acquiring animation
+ * switches the view to {@link View#LAYER_TYPE_HARDWARE}, the last releasing
+ * one restores the layer type the view had before. That way, overlapping or
+ * back-to-back animations on the same view neither restore a wrong layer
+ * type nor rebuild the layer over and over. Main thread only.
+ */
+final class LayerManager {
+    private static final WeakHashMap<View, LayerState> states = new WeakHashMap<>();
+
+    private LayerManager() { }
+
+    static void acquire(@NonNull View view) {
+        LayerState state = states.get(view);
+        if (state == null){
+            state = new LayerState(view.getLayerType());
+            states.put(view, state);
+            if (state.originalLayerType != View.LAYER_TYPE_HARDWARE){
+                view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            }
+        }
+        state.count++;
+    }
+
+    static void release(@NonNull View view) {
+        LayerState state = states.get(view);
+        if (state == null) return;
+
+        state.count--;
+        if (state.count <= 0){
+            states.remove(view);
+            if (state.originalLayerType != View.LAYER_TYPE_HARDWARE){
+                view.setLayerType(state.originalLayerType, null);
+            }
+        }
+    }
+
+    private static final class LayerState {
+        final int originalLayerType;
+        int count;
+
+        LayerState(int originalLayerType) {
+            this.originalLayerType = originalLayerType;
+        }
+    }
+}
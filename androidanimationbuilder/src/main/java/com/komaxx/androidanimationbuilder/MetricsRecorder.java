@@ -0,0 +1,168 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+/**
+ * Measures the steps of one animation run and reports them to an
+ * {@link AnimationMetricsListener}. Only ever created when a listener was set.
+ * A run with parallel tracks has one recorder for all of them: One frame
+ * callback counts the frames of every track.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class MetricsRecorder implements Choreographer.FrameCallback {
+    private static final long NANOS_PER_MS = 1000000L;
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private final AnimationTemplate template;
+    private final AnimationMetricsListener listener;
+    private final AnimationMetricsListener.StepMetrics metrics = new AnimationMetricsListener.StepMetrics();
+
+    private long runStartNanos = -1;
+
+    // per track, 0 being the template's own steps and i+1 parallelTracks[i]
+    /**
+     * When the current step should have started, according to the durations
+     * of all steps of the track played before.
+     */
+    private final long[] plannedStepStartMs;
+    private final long[] stepStartNanos;
+    private final int[] stepIndex;
+    private final boolean[] stepRunning;
+    private final int[] stepFrames;
+
+    private long lastFrameNanos = -1;
+    private long minFrameIntervalNanos = Long.MAX_VALUE;
+    private boolean frameCallbackPosted = false;
+
+    MetricsRecorder(@NonNull AnimationTemplate template, @NonNull AnimationMetricsListener listener) {
+        this.template = template;
+        this.listener = listener;
+
+        int trackCount = template.parallelTracks.length + 1;
+        plannedStepStartMs = new long[trackCount];
+        stepStartNanos = new long[trackCount];
+        stepIndex = new int[trackCount];
+        stepRunning = new boolean[trackCount];
+        stepFrames = new int[trackCount];
+    }
+
+    void stepStarted(int track, int index, long nowNanos) {
+        if (runStartNanos < 0) runStartNanos = nowNanos;
+
+        stepIndex[track] = index;
+        stepStartNanos[track] = nowNanos;
+        stepFrames[track] = 0;
+        stepRunning[track] = true;
+
+        if (!frameCallbackPosted){
+            frameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    void stepFinished(int track, long nowNanos) {
+        if (!stepRunning[track]) return;
+        stepRunning[track] = false;
+
+        AnimationTemplate trackTemplate = track == 0 ? template : template.parallelTracks[track - 1];
+        AndroidAnimationBuilder.AnimationStep step = trackTemplate.steps[stepIndex[track]];
+        long frameInterval = minFrameIntervalNanos == Long.MAX_VALUE
+                ? DEFAULT_FRAME_INTERVAL_NANOS : minFrameIntervalNanos;
+
+        metrics.trackIndex = track;
+        metrics.stepIndex = stepIndex[track];
+        metrics.plannedStartMs = plannedStepStartMs[track];
+        metrics.actualStartMs = (stepStartNanos[track] - runStartNanos) / (float) NANOS_PER_MS;
+        metrics.plannedDurationMs = step.durationMs;
+        metrics.actualDurationMs = (nowNanos - stepStartNanos[track]) / (float) NANOS_PER_MS;
+        metrics.renderedFrames = stepFrames[track];
+        metrics.expectedFrames = (int) ((step.durationMs * NANOS_PER_MS) / frameInterval);
+
+        plannedStepStartMs[track] += step.durationMs;
+        listener.onStepMeasured(metrics);
+    }
+
+    /**
+     * Wraps the synchronous work of entering a step (hooks, animator setup)
+     * in a trace section. Must be closed with {@link #endStepEntry()}. Only
+     * synchronous sections: Steps of concurrent runs overlap, so they could
+     * not be nested properly on the main thread.
+     */
+    void beginStepEntry(int track, int index) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2){
+            Trace.beginSection(template.traceSectionNames[track][index]);
+        }
+    }
+
+    void endStepEntry() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2){
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Called when a track ended, while others may still be running.
+     */
+    void trackEnded(int track) {
+        stepRunning[track] = false;
+    }
+
+    /**
+     * Called when the run ended for whatever reason. Stops counting frames.
+     */
+    void runEnded() {
+        for (int t = 0; t < stepRunning.length; t++){
+            stepRunning[t] = false;
+        }
+
+        if (frameCallbackPosted){
+            frameCallbackPosted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!frameCallbackPosted) return;
+
+        if (lastFrameNanos >= 0){
+            long interval = frameTimeNanos - lastFrameNanos;
+            if (interval > 0 && interval < minFrameIntervalNanos) minFrameIntervalNanos = interval;
+        }
+        lastFrameNanos = frameTimeNanos;
+
+        for (int t = 0; t < stepRunning.length; t++){
+            if (stepRunning[t]) stepFrames[t]++;
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
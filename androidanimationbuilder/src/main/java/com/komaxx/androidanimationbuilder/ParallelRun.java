@@ -0,0 +1,151 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Plays several independent tracks of steps (see {@link AndroidAnimationBuilder#parallel()})
+ * on one view at the same time. All tracks are evaluated in one single frame
+ * callback, one after the other, so they never compete like several
+ * ViewPropertyAnimators would. When tracks animate the same property, the
+ * track ending last wins, see {@link AnimationTemplate#trackOrder}.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class ParallelRun extends FrameDrivenRun {
+    private final TimelineRun[] tracks;
+    /**
+     * Entries are set to false once the respective track ended.
+     */
+    private final boolean[] trackRunning;
+    private boolean tracksStarted = false;
+
+    ParallelRun(@NonNull AnimationTemplate template, @NonNull View view, boolean externallyDriven) {
+        super(template, view, externallyDriven);
+
+        AnimationTemplate[] parallelTracks = template.parallelTracks;
+        tracks = new TimelineRun[parallelTracks.length + 1];
+        tracks[0] = new TimelineRun(template, view, true);
+        for (int i = 0; i < parallelTracks.length; i++){
+            tracks[i+1] = new TimelineRun(parallelTracks[i], view, true);
+        }
+        trackRunning = new boolean[tracks.length];
+    }
+
+    @Override
+    void prepare(@NonNull View view) {
+        tracksStarted = true;
+        for (int i = 0; i < tracks.length; i++){
+            tracks[i].makeTrack(startState, metrics, i);
+            tracks[i].start();
+            trackRunning[i] = true;
+        }
+    }
+
+    @Override
+    void setStartTime(long startTimeNanos) {
+        super.setStartTime(startTimeNanos);
+        for (TimelineRun track : tracks) {
+            track.setStartTime(startTimeNanos);
+        }
+    }
+
+    @Override
+    void shiftStartTime(long deltaNanos) {
+        super.shiftStartTime(deltaNanos);
+        for (TimelineRun track : tracks) {
+            track.shiftStartTime(deltaNanos);
+        }
+    }
+
+    @Override
+    void completeCurrentStep(@NonNull View view) {
+        // the tracks complete their own steps, see foldToEnd
+    }
+
+    /**
+     * Skips each track to its end, one after the other.
+     */
+    @Override
+    void foldToEnd(@NonNull View view) {
+        // when started instantly, the tracks never got their first frame
+        if (!tracksStarted) prepare(view);
+
+        for (int n = 0; n < tracks.length && !canceled; n++){
+            int i = template.trackOrder[n];
+            if (!trackRunning[i]) continue;
+            trackRunning[i] = false;
+            tracks[i].foldToEnd(view);
+            // gives up the track's layer
+            if (tracks[i].isRunning()) tracks[i].finish(view);
+        }
+    }
+
+    @Override
+    boolean advance(@NonNull View view, long frameTimeNanos) {
+        boolean anyRunning = false;
+        for (int n = 0; n < tracks.length; n++){
+            int i = template.trackOrder[n];
+            if (!trackRunning[i]) continue;
+
+            if (tracks[i].onFrame(frameTimeNanos)){
+                anyRunning = true;
+            } else {
+                trackRunning[i] = false;
+            }
+        }
+
+        if (!anyRunning && !canceled){
+            finish(view);
+        }
+        return anyRunning;
+    }
+
+    @Override
+    void onCancel(@Nullable View view) {
+        super.onCancel(view);
+        for (int i = 0; i < tracks.length; i++){
+            if (trackRunning[i]){
+                trackRunning[i] = false;
+                tracks[i].cancel();
+            }
+        }
+    }
+
+    @Override
+    int getCurrentStepIndex() {
+        return tracks[0].getCurrentStepIndex();
+    }
+
+    @Override
+    long getStepStartNanos() {
+        return tracks[0].getStepStartNanos();
+    }
+}
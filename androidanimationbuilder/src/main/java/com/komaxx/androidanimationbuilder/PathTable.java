@@ -0,0 +1,118 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+import android.support.annotation.NonNull;
+
+/**
+ * A path sampled into a lookup table at evenly spaced arc lengths. Built once
+ * when the step is defined, so playing the step only costs a table lookup per
+ * frame instead of a {@link PathMeasure} query. All contours of the path are
+ * followed one after the other.
+ */
+final class PathTable {
+    static final int DEFAULT_SAMPLE_COUNT = 128;
+
+    private final float[] xs;
+    private final float[] ys;
+    /**
+     * Tangent direction at each sample, in degrees (as used by View.setRotation).
+     */
+    private final float[] angles;
+    private final int segments;
+
+    PathTable(@NonNull Path path, int sampleCount) {
+        if (sampleCount < 2){
+            throw new IllegalArgumentException("At least 2 samples are required, got " + sampleCount);
+        }
+        segments = sampleCount - 1;
+        xs = new float[sampleCount];
+        ys = new float[sampleCount];
+        angles = new float[sampleCount];
+
+        PathMeasure measure = new PathMeasure(path, false);
+        float totalLength = 0;
+        do {
+            totalLength += measure.getLength();
+        } while (measure.nextContour());
+
+        float[] pos = new float[2];
+        float[] tan = new float[2];
+        measure.setPath(path, false);
+        float contourStart = 0;
+        float contourLength = measure.getLength();
+        for (int i = 0; i < sampleCount; i++){
+            float distance = totalLength * i / segments;
+            while (distance > contourStart + contourLength && measure.nextContour()){
+                contourStart += contourLength;
+                contourLength = measure.getLength();
+            }
+            measure.getPosTan(Math.min(distance - contourStart, contourLength), pos, tan);
+            xs[i] = pos[0];
+            ys[i] = pos[1];
+            angles[i] = (float) Math.toDegrees(Math.atan2(tan[1], tan[0]));
+        }
+
+        // no spinning around when the angle wraps from 180 to -180
+        for (int i = 1; i < sampleCount; i++){
+            float delta = angles[i] - angles[i-1];
+            if (delta > 180) angles[i] -= 360 * (int) ((delta + 180) / 360);
+            else if (delta < -180) angles[i] += 360 * (int) ((180 - delta) / 360);
+        }
+    }
+
+    float getEndX() { return xs[segments]; }
+    float getEndY() { return ys[segments]; }
+    float getEndAngle() { return angles[segments]; }
+
+    float getX(float fraction) {
+        return lookup(xs, fraction);
+    }
+
+    float getY(float fraction) {
+        return lookup(ys, fraction);
+    }
+
+    float getAngle(float fraction) {
+        return lookup(angles, fraction);
+    }
+
+    /**
+     * Fractions beyond [0, 1] (overshooting interpolators) are clamped to the
+     * path's ends.
+     */
+    private float lookup(float[] table, float fraction) {
+        if (fraction <= 0) return table[0];
+        if (fraction >= 1) return table[segments];
+
+        float position = fraction * segments;
+        int index = (int) position;
+        float rest = position - index;
+        return table[index] + (table[index + 1] - table[index]) * rest;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.animation.Interpolator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Physics based motion: Springs and fling decays, precomputed into curves
+ * that plug into animation steps like any other interpolator (see
+ * {@link AndroidAnimationBuilder#spring(float, float, float)} and
+ * {@link AndroidAnimationBuilder#flingX(float)}).
+ * <br/>
+ * Curves are computed once with a fixed timestep and cached by their
+ * parameters, so hundreds of list items using the same spring share one curve.
+ * The constants match the ones of the support library's SpringForce and
+ * FlingAnimation, so values can be carried over.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Physics {
+    public static final float STIFFNESS_HIGH = 10_000f;
+    public static final float STIFFNESS_MEDIUM = 1500f;
+    public static final float STIFFNESS_LOW = 200f;
+    public static final float STIFFNESS_VERY_LOW = 50f;
+
+    public static final float DAMPING_RATIO_HIGH_BOUNCY = 0.2f;
+    public static final float DAMPING_RATIO_MEDIUM_BOUNCY = 0.5f;
+    public static final float DAMPING_RATIO_LOW_BOUNCY = 0.75f;
+    public static final float DAMPING_RATIO_NO_BOUNCY = 1f;
+
+    public static final float DEFAULT_FRICTION = 1f;
+
+    /**
+     * Physics curves never take longer than this. Also keeps the tables of
+     * barely damped springs in check.
+     */
+    public static final int MAX_DURATION_MS = 10_000;
+
+    /**
+     * Integration substeps per ms. Keeps semi-implicit Euler stable and
+     * accurate up to {@link #STIFFNESS_HIGH}.
+     */
+    private static final int SUBSTEPS_PER_MS = 4;
+
+    /**
+     * A spring is at rest when it is (and moves) less than this fraction of
+     * its distance from the target.
+     */
+    private static final float SPRING_REST_THRESHOLD = 0.001f;
+
+    /**
+     * Flings stop once they get slower than this (px/s). Same as FlingAnimation's
+     * threshold for a minimum visible change of 1px.
+     */
+    private static final float FLING_MIN_VELOCITY = 62.5f;
+    private static final float FLING_FRICTION_MULTIPLIER = -4.2f;
+
+    private static final int CACHE_SIZE = 64;
+
+    private static final LinkedHashMap<CurveKey, Curve> cache =
+            new LinkedHashMap<CurveKey, Curve>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CurveKey, Curve> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private Physics() { }
+
+    /**
+     * The curve of a spring that pulls the animated values from their start
+     * to their target, possibly overshooting it.
+     *
+     * @param stiffness         Spring stiffness, e.g. {@link #STIFFNESS_MEDIUM}. &gt; 0
+     * @param dampingRatio      1: critically damped, &lt;1: bouncy, &gt;1: sluggish. &gt;= 0
+     * @param initialVelocity   Velocity at the start, in distances (start to target)
+     *                          per second. See {@link #relativeVelocity(float, float)}.
+     */
+    @NonNull
+    public static Curve spring(float stiffness, float dampingRatio, float initialVelocity) {
+        if (stiffness <= 0){
+            throw new IllegalArgumentException("Spring stiffness must be > 0, got " + stiffness);
+        }
+        if (dampingRatio < 0){
+            throw new IllegalArgumentException("Damping ratio must be >= 0, got " + dampingRatio);
+        }
+
+        CurveKey key = new CurveKey(CurveKey.SPRING, stiffness, dampingRatio, initialVelocity);
+        synchronized (cache) {
+            Curve curve = cache.get(key);
+            if (curve == null){
+                curve = computeSpring(stiffness, dampingRatio, initialVelocity);
+                cache.put(key, curve);
+            }
+            return curve;
+        }
+    }
+
+    /**
+     * The curve of a fling that starts with the given velocity and slows down
+     * by friction. The fling's distance follows from the physics, see
+     * {@link Curve#getDistance()}.
+     *
+     * @param velocity  Start velocity in units (e.g., px) per second.
+     * @param friction  &gt; 0, e.g. {@link #DEFAULT_FRICTION}.
+     */
+    @NonNull
+    public static Curve fling(float velocity, float friction) {
+        if (friction <= 0){
+            throw new IllegalArgumentException("Fling friction must be > 0, got " + friction);
+        }
+
+        CurveKey key = new CurveKey(CurveKey.FLING, velocity, friction, 0);
+        synchronized (cache) {
+            Curve curve = cache.get(key);
+            if (curve == null){
+                curve = computeFling(velocity, friction);
+                cache.put(key, curve);
+            }
+            return curve;
+        }
+    }
+
+    /**
+     * Converts a velocity in px/s (e.g., from a VelocityTracker) into the
+     * relative velocity a spring expects, for a spring that moves the given
+     * distance.
+     */
+    public static float relativeVelocity(float velocityPxPerSecond, float distancePx) {
+        if (distancePx == 0) return 0;
+        return velocityPxPerSecond / distancePx;
+    }
+
+    /**
+     * Drops all cached curves. Curves already handed out remain valid.
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Integrates the normalized spring (unit mass, distance 1) with semi-implicit
+     * Euler. Runs twice: once to find the settle time, once to fill the table -
+     * the integration itself allocates nothing.
+     */
+    private static Curve computeSpring(float stiffness, float dampingRatio, float initialVelocity) {
+        int durationMs = integrateSpring(stiffness, dampingRatio, initialVelocity, null);
+        float[] table = new float[durationMs + 1];
+        integrateSpring(stiffness, dampingRatio, initialVelocity, table);
+        return new Curve(table, durationMs, 1);
+    }
+
+    /**
+     * @param table     Receives the position (0: start, 1: target) for every ms, if not null.
+     * @return  The number of ms until the spring is at rest.
+     */
+    private static int integrateSpring(float stiffness, float dampingRatio,
+                                       float initialVelocity, float[] table) {
+        double omega = Math.sqrt(stiffness);
+        double damping = 2 * dampingRatio * omega;
+        double h = 0.001 / SUBSTEPS_PER_MS;
+
+        // displacement from the target, in distances
+        double x = -1;
+        double v = initialVelocity;
+        if (table != null) table[0] = 0;
+
+        int ms = 0;
+        while (ms < MAX_DURATION_MS){
+            for (int i = 0; i < SUBSTEPS_PER_MS; i++){
+                v += (-stiffness * x - damping * v) * h;
+                x += v * h;
+            }
+            ms++;
+            if (table != null) table[ms] = (float) (1 + x);
+
+            // the velocity check makes sure the spring does not swing out again
+            if (Math.abs(x) < SPRING_REST_THRESHOLD
+                    && Math.abs(v) < SPRING_REST_THRESHOLD * omega){
+                break;
+            }
+        }
+        return ms;
+    }
+
+    /**
+     * Exponential decay of the velocity: v(t) = v0 * e^(c*t), so the distance
+     * has a closed form and is sampled with the same timestep as springs.
+     */
+    private static Curve computeFling(float velocity, float friction) {
+        float speed = Math.abs(velocity);
+        if (speed <= FLING_MIN_VELOCITY){
+            return new Curve(new float[] { 0, 1 }, 1, 0);
+        }
+
+        double c = FLING_FRICTION_MULTIPLIER * friction;
+        // the time at which the fling gets too slow to be visible
+        double stopSeconds = Math.log(FLING_MIN_VELOCITY / speed) / c;
+        int durationMs = (int) Math.min(MAX_DURATION_MS, Math.max(1, Math.round(stopSeconds * 1000)));
+
+        double endDecay = 1 - Math.exp(c * durationMs / 1000.0);
+        float distance = (float) (-velocity / c * endDecay);
+
+        float[] table = new float[durationMs + 1];
+        for (int ms = 0; ms <= durationMs; ms++){
+            table[ms] = (float) ((1 - Math.exp(c * ms / 1000.0)) / endDecay);
+        }
+        return new Curve(table, durationMs, distance);
+    }
+
+    /**
+     * A precomputed physics curve. Maps the step's progress to the progress of
+     * the motion (values beyond 1 when a spring overshoots). Ends exactly at 1.
+     */
+    public static final class Curve implements Interpolator {
+        /**
+         * One sample per ms.
+         */
+        private final float[] table;
+        private final int durationMs;
+        private final float distance;
+
+        Curve(float[] table, int durationMs, float distance) {
+            this.table = table;
+            this.durationMs = durationMs;
+            this.distance = distance;
+        }
+
+        @Override
+        public float getInterpolation(float input) {
+            if (input <= 0) return table[0];
+            if (input >= 1) return 1;
+
+            float position = input * durationMs;
+            int index = (int) position;
+            float fraction = position - index;
+            return table[index] + (table[index + 1] - table[index]) * fraction;
+        }
+
+        /**
+         * How long the motion takes until it is at rest.
+         */
+        public int getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         * How far a fling travels (in the units of its velocity). 1 for springs,
+         * which move the distance between the step's start and target.
+         */
+        public float getDistance() {
+            return distance;
+        }
+    }
+
+    private static final class CurveKey {
+        static final int SPRING = 0;
+        static final int FLING = 1;
+
+        final int type;
+        final float a;
+        final float b;
+        final float c;
+
+        CurveKey(int type, float a, float b, float c) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CurveKey)) return false;
+
+            CurveKey other = (CurveKey) o;
+            return type == other.type
+                    && Float.floatToIntBits(a) == Float.floatToIntBits(other.a)
+                    && Float.floatToIntBits(b) == Float.floatToIntBits(other.b)
+                    && Float.floatToIntBits(c) == Float.floatToIntBits(other.c);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + Float.floatToIntBits(a);
+            result = 31 * result + Float.floatToIntBits(b);
+            result = 31 * result + Float.floatToIntBits(c);
+            return result;
+        }
+    }
+}
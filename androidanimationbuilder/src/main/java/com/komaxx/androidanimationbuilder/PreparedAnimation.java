@@ -0,0 +1,134 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Handle of an animation that is compiled in the background, see
+ * {@link AndroidAnimationBuilder#prepareAsync(java.util.concurrent.Executor)}.
+ * Once ready, playing it costs about as much as {@link AnimationTemplate#playOn(View)}:
+ * Only the view's start state is captured on the main thread.
+ * <br/>
+ * All methods must be called on the main thread.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class PreparedAnimation {
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final WeakReference<View> viewRef;
+
+    // only touched on the main thread
+    @Nullable private AnimationTemplate template;
+    @Nullable private AnimationRun run;
+    private boolean playRequested;
+    private boolean canceled;
+
+    PreparedAnimation(@NonNull WeakReference<View> viewRef) {
+        this.viewRef = viewRef;
+    }
+
+    /**
+     * Called on the worker thread once compiling is done.
+     */
+    void onCompiled(@NonNull final AnimationTemplate compiled) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                template = compiled;
+                if (playRequested) start();
+            }
+        });
+    }
+
+    /**
+     * Whether the animation is compiled and can be started without any delay.
+     */
+    @MainThread
+    public boolean isReady() {
+        return template != null;
+    }
+
+    /**
+     * The compiled template, e.g., to also play it on other views.
+     * <code>null</code> until ready.
+     */
+    @MainThread
+    @Nullable
+    public AnimationTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Starts the animation on the builder's view. If not ready yet, it starts as
+     * soon as compiling is done. Playing twice has no effect.
+     */
+    @MainThread
+    public void play() {
+        if (playRequested || canceled) return;
+        playRequested = true;
+        if (template != null) start();
+    }
+
+    private void start() {
+        if (canceled || run != null || template == null) return;
+
+        View view = viewRef.get();
+        if (view == null){
+            if (AndroidAnimationBuilder.DEBUG_LOGGING){
+                Log.i("AndroidAnimationBuilder", "Not executing: View was cleaned up");
+            }
+            return;
+        }
+        run = template.playOn(view);
+    }
+
+    /**
+     * Stops the animation if it is running, or makes sure it never starts.
+     */
+    @MainThread
+    public void cancel() {
+        canceled = true;
+        if (run != null) run.cancel();
+    }
+
+    /**
+     * The run started by {@link #play()}, <code>null</code> before.
+     */
+    @MainThread
+    @Nullable
+    public AnimationRun getRun() {
+        return run;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+/**
+ * Plays a run backwards, see {@link AnimationRun#reverse()}. The template's
+ * sequence (and all its parallel tracks) is resolved once from the start state
+ * of the reversed run, and then evaluated at the forward timeline's time, counting
+ * down. As each step's interpolator is evaluated backwards, it is mirrored for
+ * free: <code>1 - f(1 - t)</code>.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class ReverseRun extends FrameDrivenRun {
+    /**
+     * The main track first, parallel tracks afterwards, as in {@link SeekableAnimation}.
+     */
+    private final UnrolledTrack[] tracks;
+    /**
+     * Per track: The played step the view is currently in, -1 when the track
+     * is back at its start.
+     */
+    private final int[] currentPlayed;
+    /**
+     * Where on the forward timeline the way back starts.
+     */
+    private final long fromMs;
+
+    private boolean prepared = false;
+
+    ReverseRun(@NonNull AnimationTemplate template, @NonNull View view,
+               @NonNull AndroidAnimationBuilder.StartState startState, long positionMs) {
+        super(template, view, false);
+        this.startState = startState;
+
+        AnimationTemplate[] parallelTracks = template.parallelTracks;
+        tracks = new UnrolledTrack[parallelTracks.length + 1];
+        tracks[0] = new UnrolledTrack(template, startState);
+        long longest = tracks[0].getDurationMs();
+        for (int i = 0; i < parallelTracks.length; i++){
+            tracks[i+1] = new UnrolledTrack(parallelTracks[i], startState);
+            longest = Math.max(longest, tracks[i+1].getDurationMs());
+        }
+        fromMs = Math.max(0, Math.min(longest, positionMs));
+        currentPlayed = new int[tracks.length];
+    }
+
+    @Override
+    boolean isReversible() {
+        return false;
+    }
+
+    @Override
+    void prepare(@NonNull View view) {
+        prepared = true;
+        boolean animates = false;
+        for (int t : template.trackOrder) {
+            UnrolledTrack track = tracks[t];
+            int k = findStepBefore(track, fromMs);
+            currentPlayed[t] = k;
+            if (k < 0) continue;
+            animates = true;
+
+            // going back from the step's end: mirrored, that's where it starts
+            AndroidAnimationBuilder.AnimationStep step = track.getPlayedStep(k);
+            if (fromMs >= track.getStartMs(k + 1) && step.postStep != null){
+                step.postStep.run(view);
+                if (canceled) return;
+            }
+        }
+        // a layer would need to be redrawn for each frame of custom properties
+        updateLayerForStep(view, animates && template.customProperties.length == 0);
+    }
+
+    @Override
+    boolean advance(@NonNull View view, long frameTimeNanos) {
+        long ms = fromMs - (frameTimeNanos - startTimeNanos) / NANOS_PER_MS;
+
+        boolean running = false;
+        for (int t : template.trackOrder) {
+            if (!rewind(view, t, ms)) return false;
+            if (currentPlayed[t] >= 0) running = true;
+        }
+
+        if (!running){
+            finish(view);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Brings the track back to the given time of the forward timeline, calling
+     * the hooks of all steps passed on the way.
+     *
+     * @return  <code>false</code> when a hook canceled the run.
+     */
+    private boolean rewind(@NonNull View view, int t, long ms) {
+        UnrolledTrack track = tracks[t];
+        int k = currentPlayed[t];
+        if (k < 0) return true;
+
+        int target = findStepBefore(track, ms);
+        while (k > target){
+            // leaving the step at its start: Mirrored, that's its end
+            track.apply(view, track.getStartMs(k));
+            AndroidAnimationBuilder.AnimationStep step = track.getPlayedStep(k);
+            if (step.preStep != null){
+                step.preStep.run(view);
+                if (canceled) return false;
+            }
+
+            k--;
+            currentPlayed[t] = k;
+            if (k < 0) break;
+
+            // entering the previous one from its end
+            step = track.getPlayedStep(k);
+            if (step.postStep != null){
+                step.postStep.run(view);
+                if (canceled) return false;
+            }
+        }
+
+        if (k >= 0) track.apply(view, ms);
+        return true;
+    }
+
+    /**
+     * The last played step starting strictly before the given time, i.e., at a
+     * step boundary the view is still at the end of the earlier step. -1 when
+     * the time is at (or before) the track's start.
+     */
+    private static int findStepBefore(@NonNull UnrolledTrack track, long ms) {
+        if (ms <= 0 || track.getPlayedCount() == 0) return -1;
+        return track.findPlayedStep(ms - 1);
+    }
+
+    @Override
+    void foldToEnd(@NonNull View view) {
+        if (!prepared){
+            // taken back right away, without ever being started
+            prepare(view);
+            if (canceled) return;
+        }
+
+        // the end of a reversed run is the start of the forward one
+        for (int t : template.trackOrder) {
+            if (!rewind(view, t, 0)) return;
+        }
+    }
+
+    @Override
+    void completeCurrentStep(@NonNull View view) {
+        // nothing to complete: foldToEnd takes all steps back
+    }
+
+    @Override
+    int getCurrentStepIndex() {
+        int k = currentPlayed[0];
+        return k < 0 ? -1 : tracks[0].getStepIndex(k);
+    }
+
+    @Override
+    long getStepStartNanos() {
+        int k = currentPlayed[0];
+        if (k < 0) return 0;
+        return Math.max(0, fromMs - tracks[0].getStartMs(k + 1)) * NANOS_PER_MS;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.FloatRange;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * An animation that is not played in real time but evaluated at any point on
+ * demand, e.g., linked to scrolling or a gesture. See
+ * {@link AnimationTemplate#seekOn(View)}.
+ * <br/>
+ * When created, the whole sequence is resolved once: Each step played
+ * (repetitions included) gets its start time and the view's values at its start
+ * and end. Seeking then finds the active step with a binary search over the
+ * start times and interpolates, i.e., O(log steps) and no allocations per call.
+ * <br/>
+ * Hooks are not called, as seeking may go back and forth. Animations that loop
+ * forever are seekable up to where the endless loop jumps back for the first
+ * time. The view is only WEAKLY held. Main thread only.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class SeekableAnimation {
+    private final WeakReference<View> viewRef;
+    /**
+     * The main track first, parallel tracks afterwards. Applied in the
+     * template's {@link AnimationTemplate#trackOrder}: The track ending last wins.
+     */
+    private final UnrolledTrack[] tracks;
+    private final int[] trackOrder;
+    private final long durationMs;
+
+    private long currentMs = -1;
+
+    SeekableAnimation(@NonNull AnimationTemplate template, @NonNull View view) {
+        viewRef = new WeakReference<>(view);
+
+        // seeking takes over the view
+        AndroidAnimationBuilder.cancel(view);
+        if (template.startClean) AndroidAnimationBuilder.CLEAN.run(view);
+        AndroidAnimationBuilder.StartState startState = new AndroidAnimationBuilder.StartState(view, template.customProperties);
+
+        AnimationTemplate[] parallelTracks = template.parallelTracks;
+        tracks = new UnrolledTrack[parallelTracks.length + 1];
+        tracks[0] = new UnrolledTrack(template, startState);
+        long longest = tracks[0].getDurationMs();
+        for (int i = 0; i < parallelTracks.length; i++){
+            tracks[i+1] = new UnrolledTrack(parallelTracks[i], startState);
+            longest = Math.max(longest, tracks[i+1].getDurationMs());
+        }
+        durationMs = longest;
+        trackOrder = template.trackOrder;
+    }
+
+    /**
+     * Brings the view to the state at the given fraction of the whole animation.
+     */
+    @MainThread
+    public void setProgress(@FloatRange(from = 0, to = 1) float fraction) {
+        seekTo(Math.round(fraction * durationMs));
+    }
+
+    /**
+     * Brings the view to the state at the given time of the animation, clamped
+     * to [0, duration].
+     */
+    @MainThread
+    public void seekTo(long ms) {
+        View view = viewRef.get();
+        if (view == null) return;
+
+        currentMs = Math.max(0, Math.min(durationMs, ms));
+        for (int t : trackOrder) {
+            tracks[t].apply(view, currentMs);
+        }
+    }
+
+    /**
+     * Duration of the seekable part, repetitions included.
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * The time last sought to, -1 before the first seek.
+     */
+    public long getCurrentMs() {
+        return currentMs;
+    }
+}
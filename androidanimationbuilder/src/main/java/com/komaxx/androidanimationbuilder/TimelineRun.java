@@ -0,0 +1,221 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+/**
+ * Plays the whole sequence as one timeline, driven by a single {@link Choreographer}
+ * frame callback. Step boundaries are computed from the step durations,
+ * so a frame that crosses a boundary finishes the old step and continues
+ * the next one right away - no frame is lost in between.
+ * See {@link AndroidAnimationBuilder.Engine#TIMELINE}.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class TimelineRun extends FrameDrivenRun {
+    /**
+     * Values of the view when the current step started
+     */
+    private final float[] from = new float[ViewProperties.COUNT];
+    /**
+     * Values the current step animates towards. Only valid for the
+     * properties set in 'animatedMask'.
+     */
+    private final float[] to = new float[ViewProperties.COUNT];
+    private int animatedMask;
+    private Interpolator interpolator;
+    /**
+     * Path of the current step, if any, and the properties it drives.
+     */
+    private PathTable path;
+    private int pathMask;
+
+    /**
+     * Start values and targets of the current step's custom properties,
+     * indexed like its 'customProperties'.
+     */
+    private final double[] customFrom;
+    private final double[] customTo;
+    @Nullable private AnimatableProperty[] customProperties;
+    private int customCount;
+    private int customAnimatedMask;
+
+    /**
+     * Start of the current step, relative to the timeline's zero. Accumulated
+     * step by step, as loops make the offsets differ per repetition.
+     */
+    private long stepStartNanos = 0;
+
+    TimelineRun(@NonNull AnimationTemplate template, @NonNull View view) {
+        this(template, view, false);
+    }
+
+    TimelineRun(@NonNull AnimationTemplate template, @NonNull View view, boolean externallyDriven) {
+        super(template, view, externallyDriven);
+        customFrom = new double[template.maxStepCustomCount];
+        customTo = new double[template.maxStepCustomCount];
+    }
+
+    @Override
+    void prepare(@NonNull View view) {
+        // the first step starts right away (pre-step hooks included), the
+        // timeline's zero is the first frame.
+        enterStep(view, resolveStepIndex(0), System.nanoTime());
+    }
+
+    /**
+     * Brings the view to the state at the given point of the timeline. Finishes
+     * (and starts) all steps whose boundaries were crossed since the last frame.
+     *
+     * @return  <code>false</code> when the animation is done or was aborted.
+     */
+    @Override
+    boolean advance(@NonNull View view, long frameTimeNanos) {
+        // the completion of the async hook requests the next frame
+        if (isAwaitingAsync()) return false;
+
+        long elapsedNanos = frameTimeNanos - startTimeNanos;
+        long stepDurationNanos = template.steps[currentStepIndex].durationMs * NANOS_PER_MS;
+
+        while (elapsedNanos >= stepStartNanos + stepDurationNanos){
+            applyTargets(view);
+
+            if (metrics != null) metrics.stepFinished(metricsTrack, frameTimeNanos);
+
+            AndroidAnimationBuilder.AnimationStep step = template.steps[currentStepIndex];
+            if (step.postStep != null) step.postStep.run(view);
+
+            int nextStepIndex = resolveStepIndex(currentStepIndex + 1);
+            if (nextStepIndex >= template.steps.length){
+                finish(view);
+                return false;
+            }
+
+            // the hook may have handed the view to another animation
+            if (getViewIfStillOwned() == null) return false;
+            stepStartNanos += stepDurationNanos;
+            enterStep(view, nextStepIndex, frameTimeNanos);
+            if (isAwaitingAsync()) return false;
+            stepDurationNanos = template.steps[currentStepIndex].durationMs * NANOS_PER_MS;
+        }
+
+        float fraction = (elapsedNanos - stepStartNanos) / (float) stepDurationNanos;
+        applyFraction(view, interpolator.getInterpolation(fraction));
+        return true;
+    }
+
+    @Override
+    int getCurrentStepIndex() {
+        return currentStepIndex;
+    }
+
+    @Override
+    long getStepStartNanos() {
+        return stepStartNanos;
+    }
+
+    @Override
+    void completeCurrentStep(@NonNull View view) {
+        if (currentStepIndex < 0) return;
+
+        applyTargets(view);
+        AndroidAnimationBuilder.AnimationStep step = template.steps[currentStepIndex];
+        if (step.postStep != null) step.postStep.run(view);
+    }
+
+    private void enterStep(@NonNull View view, int index, long nowNanos) {
+        currentStepIndex = index;
+        AndroidAnimationBuilder.AnimationStep step = template.steps[index];
+
+        if (metrics != null){
+            metrics.stepStarted(metricsTrack, index, nowNanos);
+            metrics.beginStepEntry(metricsTrack, index);
+        }
+
+        if (step.preStep != null){
+            step.preStep.run(view);
+        }
+
+        ViewProperties.read(view, from);
+        animatedMask = step.resolveTargets(from, to, startState, template.optimizeChain);
+        interpolator = step.getInterpolatorOrDefault();
+        path = step.path;
+        pathMask = step.getPathMask();
+        customProperties = step.customProperties;
+        customCount = step.getCustomCount();
+        customAnimatedMask = step.resolveCustomTargets(view, customFrom, customTo, startState);
+
+        // a layer would need to be redrawn for each frame of custom properties
+        updateLayerForStep(view, animatedMask != 0 && customAnimatedMask == 0);
+
+        if (metrics != null) metrics.endStepEntry();
+
+        if (step instanceof AndroidAnimationBuilder.AsyncStep){
+            awaitAsync(view, (AndroidAnimationBuilder.AsyncStep) step);
+        }
+    }
+
+    private void applyTargets(@NonNull View view) {
+        for (int i = 0; i < ViewProperties.COUNT; i++){
+            if ((animatedMask & (1 << i)) != 0){
+                ViewProperties.set(view, i, to[i]);
+            }
+        }
+        for (int j = 0; j < customCount; j++){
+            if ((customAnimatedMask & (1 << j)) != 0) customProperties[j].write(view, customTo[j]);
+        }
+    }
+
+    private void applyFraction(@NonNull View view, float fraction) {
+        int straightMask = animatedMask & ~pathMask;
+        for (int i = 0; i < ViewProperties.COUNT; i++){
+            if ((straightMask & (1 << i)) != 0){
+                ViewProperties.set(view, i, from[i] + (to[i] - from[i]) * fraction);
+            }
+        }
+
+        if (path != null){
+            view.setTranslationX(path.getX(fraction));
+            view.setTranslationY(path.getY(fraction));
+            if ((pathMask & (1 << ViewProperties.ROTATION)) != 0){
+                view.setRotation(path.getAngle(fraction));
+            }
+        }
+
+        for (int j = 0; j < customCount; j++){
+            if ((customAnimatedMask & (1 << j)) != 0){
+                AnimatableProperty property = customProperties[j];
+                property.write(view, property.evaluate(fraction, customFrom[j], customTo[j]));
+            }
+        }
+    }
+}
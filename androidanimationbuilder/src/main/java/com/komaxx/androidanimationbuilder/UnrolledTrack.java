@@ -0,0 +1,264 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+/**
+ * One sequence of steps, unrolled into flat arrays: Each step played (repetitions
+ * included) with its start time and the view's values at its start and end.
+ * Resolved once from a start state, just like playing would, and then evaluated
+ * at any time without allocations. Used by {@link SeekableAnimation} and
+ * {@link ReverseRun}.
+ * <br/>
+ * Sequences that loop forever are unrolled up to where the endless loop jumps
+ * back for the first time.
+ */
+final class UnrolledTrack {
+    private final AndroidAnimationBuilder.AnimationStep[] steps;
+
+    /**
+     * Prefix sums of the played steps' durations: Entry k is when the k-th
+     * played step starts, the last entry is the track's duration.
+     */
+    private final long[] startMs;
+    /**
+     * Index into 'steps' of each played step.
+     */
+    private final int[] stepIndices;
+    /**
+     * All view values at the start / end of each played step, ViewProperties.COUNT
+     * entries per played step.
+     */
+    private final float[] fromValues;
+    private final float[] toValues;
+    private final int[] animatedMasks;
+    private final int playedCount;
+
+    /**
+     * All properties this track ever changes. The others are left alone,
+     * so parallel tracks don't overwrite each other.
+     */
+    private int touchedMask;
+
+    /**
+     * The custom properties of the start state, see {@link AnimatableProperty}.
+     * Their values at the start of each played step (plus one row for the end),
+     * whether each played step animates them, and whether the track ever does.
+     */
+    private final AnimatableProperty[] customProperties;
+    private final double[] customValues;
+    private final boolean[] customAnimated;
+    private final boolean[] customTouched;
+
+    /**
+     * Scratch for the values applied, so that applying does not allocate.
+     */
+    private final float[] values = new float[ViewProperties.COUNT];
+
+    UnrolledTrack(@NonNull AnimationTemplate template, @NonNull AndroidAnimationBuilder.StartState startState) {
+        steps = template.steps;
+        int[] loopCounters = template.loopCount > 0 ? new int[template.loopCount] : null;
+
+        // first pass: count the played steps
+        int count = 0;
+        for (int index = AnimationRun.resolveStepIndex(steps, loopCounters, 0, true);
+             index < steps.length;
+             index = AnimationRun.resolveStepIndex(steps, loopCounters, index + 1, true)){
+            count++;
+        }
+        playedCount = count;
+
+        startMs = new long[count + 1];
+        stepIndices = new int[count];
+        fromValues = new float[count * ViewProperties.COUNT];
+        toValues = new float[count * ViewProperties.COUNT];
+        animatedMasks = new int[count];
+        customProperties = startState.getCustomProperties();
+        int customCount = customProperties.length;
+        customValues = new double[(count + 1) * customCount];
+        customAnimated = new boolean[count * customCount];
+        customTouched = new boolean[customCount];
+
+        // second pass: resolve the values, just like playing would
+        float[] values = startState.values.clone();
+        float[] to = new float[ViewProperties.COUNT];
+        double[] customs = new double[customCount];
+        for (int u = 0; u < customCount; u++){
+            customs[u] = startState.getCustom(customProperties[u]);
+        }
+        int k = 0;
+        for (int index = AnimationRun.resolveStepIndex(steps, loopCounters, 0, true);
+             index < steps.length;
+             index = AnimationRun.resolveStepIndex(steps, loopCounters, index + 1, true)){
+            AndroidAnimationBuilder.AnimationStep step = steps[index];
+            stepIndices[k] = index;
+            startMs[k + 1] = startMs[k] + step.durationMs;
+
+            int mask = step.resolveTargets(values, to, startState, template.optimizeChain);
+            animatedMasks[k] = mask;
+            touchedMask |= mask;
+            System.arraycopy(values, 0, fromValues, k * ViewProperties.COUNT, ViewProperties.COUNT);
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if ((mask & (1 << i)) != 0) values[i] = to[i];
+            }
+            System.arraycopy(values, 0, toValues, k * ViewProperties.COUNT, ViewProperties.COUNT);
+
+            System.arraycopy(customs, 0, customValues, k * customCount, customCount);
+            for (int j = 0; j < step.getCustomCount(); j++){
+                int u = indexOf(customProperties, step.customProperties[j]);
+                double target = step.resolveCustomTarget(j, startState);
+                if (u < 0 || Double.isNaN(target) || target == customs[u]) continue;
+                customAnimated[k * customCount + u] = true;
+                customTouched[u] = true;
+                customs[u] = target;
+            }
+            k++;
+        }
+        System.arraycopy(customs, 0, customValues, count * customCount, customCount);
+    }
+
+    long getDurationMs() {
+        return startMs[playedCount];
+    }
+
+    int getPlayedCount() {
+        return playedCount;
+    }
+
+    /**
+     * The step definition of the k-th played step.
+     */
+    @NonNull
+    AndroidAnimationBuilder.AnimationStep getPlayedStep(int k) {
+        return steps[stepIndices[k]];
+    }
+
+    /**
+     * Index into the template's steps of the k-th played step.
+     */
+    int getStepIndex(int k) {
+        return stepIndices[k];
+    }
+
+    /**
+     * When the k-th played step starts, relative to the track's start.
+     */
+    long getStartMs(int k) {
+        return startMs[k];
+    }
+
+    void apply(@NonNull View view, long ms) {
+        if (playedCount == 0) return;
+
+        int k = findPlayedStep(ms);
+        float interpolated = interpolate(k, ms);
+        evaluate(k, interpolated, values);
+        for (int i = 0; i < ViewProperties.COUNT; i++){
+            if ((touchedMask & (1 << i)) != 0) ViewProperties.set(view, i, values[i]);
+        }
+
+        int customCount = customProperties.length;
+        for (int u = 0; u < customCount; u++){
+            if (!customTouched[u]) continue;
+
+            double from = customValues[k * customCount + u];
+            if (customAnimated[k * customCount + u]){
+                from = customProperties[u].evaluate(interpolated, from, customValues[(k + 1) * customCount + u]);
+            }
+            customProperties[u].write(view, from);
+        }
+    }
+
+    /**
+     * The view properties at the given time, as {@link #apply} would set them
+     * (custom properties aside). Properties the track never changes keep their
+     * value in 'into'.
+     */
+    void evaluate(long ms, @NonNull float[] into) {
+        if (playedCount == 0) return;
+
+        int k = findPlayedStep(ms);
+        evaluate(k, interpolate(k, ms), into);
+    }
+
+    private void evaluate(int k, float interpolated, @NonNull float[] into) {
+        AndroidAnimationBuilder.AnimationStep step = steps[stepIndices[k]];
+        int animated = animatedMasks[k] & ~step.getPathMask();
+        int offset = k * ViewProperties.COUNT;
+        for (int i = 0; i < ViewProperties.COUNT; i++){
+            int bit = 1 << i;
+            if ((touchedMask & bit) == 0) continue;
+
+            float from = fromValues[offset + i];
+            if ((animated & bit) != 0){
+                from += (toValues[offset + i] - from) * interpolated;
+            }
+            into[i] = from;
+        }
+
+        // paths are part of the touched properties
+        PathTable path = step.path;
+        if (path != null){
+            into[ViewProperties.TRANSLATION_X] = path.getX(interpolated);
+            into[ViewProperties.TRANSLATION_Y] = path.getY(interpolated);
+            if (step.rotateAlongPath) into[ViewProperties.ROTATION] = path.getAngle(interpolated);
+        }
+    }
+
+    /**
+     * The interpolated fraction of the k-th played step at the given time.
+     */
+    private float interpolate(int k, long ms) {
+        long stepDurationMs = startMs[k + 1] - startMs[k];
+        float fraction = stepDurationMs > 0 ? (ms - startMs[k]) / (float) stepDurationMs : 1;
+        Interpolator interpolator = steps[stepIndices[k]].getInterpolatorOrDefault();
+        return interpolator.getInterpolation(Math.min(1, fraction));
+    }
+
+    private static int indexOf(AnimatableProperty[] properties, AnimatableProperty property) {
+        for (int i = 0; i < properties.length; i++){
+            if (properties[i] == property) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Binary search for the last played step starting at or before 'ms'.
+     */
+    int findPlayedStep(long ms) {
+        int low = 0;
+        int high = playedCount - 1;
+        while (low < high){
+            int mid = (low + high + 1) >>> 1;
+            if (startMs[mid] <= ms) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+}
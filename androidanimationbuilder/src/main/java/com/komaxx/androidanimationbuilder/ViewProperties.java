@@ -0,0 +1,118 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewPropertyAnimator;
+
+/**
+ * Index based, primitive access to the view properties the builder animates.
+ * The indices are shared with the value arrays of animation steps and
+ * start states.
+ */
+final class ViewProperties {
+    static final int ROTATION = 0;
+    static final int TRANSLATION_X = 1;
+    static final int TRANSLATION_Y = 2;
+    static final int TRANSLATION_Z = 3;
+    static final int SCALE_X = 4;
+    static final int SCALE_Y = 5;
+    static final int ALPHA = 6;
+
+    static final int COUNT = 7;
+
+    /**
+     * Mask with the bits of all view properties set.
+     */
+    static final int ALL = (1 << COUNT) - 1;
+
+    private ViewProperties() { }
+
+    /**
+     * Reads all properties of the view into the given array.
+     */
+    static void read(@NonNull View view, float[] into) {
+        for (int i = 0; i < COUNT; i++){
+            into[i] = get(view, i);
+        }
+    }
+
+    static float get(@NonNull View view, int index) {
+        switch (index){
+            case ROTATION: return view.getRotation();
+            case TRANSLATION_X: return view.getTranslationX();
+            case TRANSLATION_Y: return view.getTranslationY();
+            case TRANSLATION_Z:
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP){
+                    return view.getTranslationZ();
+                }
+                return 0;
+            case SCALE_X: return view.getScaleX();
+            case SCALE_Y: return view.getScaleY();
+            case ALPHA: return view.getAlpha();
+            default: throw new IllegalArgumentException("Unknown view property: " + index);
+        }
+    }
+
+    /**
+     * Makes the animator animate the property towards the given value.
+     */
+    static void animate(@NonNull ViewPropertyAnimator animate, int index, float value) {
+        switch (index){
+            case ROTATION: animate.rotation(value); break;
+            case TRANSLATION_X: animate.translationX(value); break;
+            case TRANSLATION_Y: animate.translationY(value); break;
+            case TRANSLATION_Z:
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP){
+                    animate.translationZ(value);
+                }
+                break;
+            case SCALE_X: animate.scaleX(value); break;
+            case SCALE_Y: animate.scaleY(value); break;
+            case ALPHA: animate.alpha(value); break;
+            default: throw new IllegalArgumentException("Unknown view property: " + index);
+        }
+    }
+
+    static void set(@NonNull View view, int index, float value) {
+        switch (index){
+            case ROTATION: view.setRotation(value); break;
+            case TRANSLATION_X: view.setTranslationX(value); break;
+            case TRANSLATION_Y: view.setTranslationY(value); break;
+            case TRANSLATION_Z:
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP){
+                    view.setTranslationZ(value);
+                }
+                break;
+            case SCALE_X: view.setScaleX(value); break;
+            case SCALE_Y: view.setScaleY(value); break;
+            case ALPHA: view.setAlpha(value); break;
+            default: throw new IllegalArgumentException("Unknown view property: " + index);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the view properties the builder animates. Used to
+ * compute where an animation ends up without playing it, see
+ * {@link AnimationTemplate#computeEndState(ViewState)}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class ViewState {
+    /**
+     * Indexed as defined in {@link ViewProperties}.
+     */
+    final float[] values;
+
+    public ViewState(float rotation, float translationX, float translationY, float translationZ,
+                     float scaleX, float scaleY, float alpha) {
+        values = new float[ViewProperties.COUNT];
+        values[ViewProperties.ROTATION] = rotation;
+        values[ViewProperties.TRANSLATION_X] = translationX;
+        values[ViewProperties.TRANSLATION_Y] = translationY;
+        values[ViewProperties.TRANSLATION_Z] = translationZ;
+        values[ViewProperties.SCALE_X] = scaleX;
+        values[ViewProperties.SCALE_Y] = scaleY;
+        values[ViewProperties.ALPHA] = alpha;
+    }
+
+    ViewState(@NonNull float[] values) {
+        this.values = values;
+    }
+
+    /**
+     * The current state of the view.
+     */
+    @NonNull
+    public static ViewState of(@NonNull View view) {
+        float[] values = new float[ViewProperties.COUNT];
+        ViewProperties.read(view, values);
+        return new ViewState(values);
+    }
+
+    /**
+     * No rotation, no translation, no scaling, fully opaque.
+     */
+    @NonNull
+    public static ViewState clean() {
+        return new ViewState(0, 0, 0, 0, 1, 1, 1);
+    }
+
+    public float getRotation() { return values[ViewProperties.ROTATION]; }
+    public float getTranslationX() { return values[ViewProperties.TRANSLATION_X]; }
+    public float getTranslationY() { return values[ViewProperties.TRANSLATION_Y]; }
+    public float getTranslationZ() { return values[ViewProperties.TRANSLATION_Z]; }
+    public float getScaleX() { return values[ViewProperties.SCALE_X]; }
+    public float getScaleY() { return values[ViewProperties.SCALE_Y]; }
+    public float getAlpha() { return values[ViewProperties.ALPHA]; }
+
+    /**
+     * Sets all properties of the view to this state.
+     */
+    public void applyTo(@NonNull View view) {
+        for (int i = 0; i < ViewProperties.COUNT; i++){
+            ViewProperties.set(view, i, values[i]);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof ViewState && Arrays.equals(values, ((ViewState) o).values));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "ViewState{rotation=" + getRotation()
+                + ", translation=(" + getTranslationX() + ", " + getTranslationY() + ", " + getTranslationZ()
+                + "), scale=(" + getScaleX() + ", " + getScaleY()
+                + "), alpha=" + getAlpha() + '}';
+    }
+}
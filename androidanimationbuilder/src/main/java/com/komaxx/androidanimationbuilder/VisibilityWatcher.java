@@ -0,0 +1,107 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Tells a run when its view is detached, and when it is drawn again after
+ * being hidden. See {@link AndroidAnimationBuilder.SuspendPolicy}.
+ * <br/>
+ * Only the view holds the watcher (as listener), the watcher never holds
+ * the view.
+ */
+final class VisibilityWatcher implements View.OnAttachStateChangeListener,
+        ViewTreeObserver.OnPreDrawListener {
+    private final AnimationRun run;
+
+    /**
+     * Set while registered as pre-draw listener, i.e., while waiting for the
+     * view to be drawn again.
+     */
+    private boolean waiting = false;
+
+    VisibilityWatcher(@NonNull AnimationRun run) {
+        this.run = run;
+    }
+
+    static boolean isVisible(@NonNull View view) {
+        return view.getWindowToken() != null && view.getWindowVisibility() == View.VISIBLE;
+    }
+
+    void watch(@NonNull View view) {
+        view.addOnAttachStateChangeListener(this);
+    }
+
+    /**
+     * Waits for the next draw pass of the view's window. Registered at the
+     * view's current observer: Observers of detached views are merged into
+     * the window's one when attached.
+     */
+    void waitForVisibility(@NonNull View view) {
+        if (waiting) return;
+        waiting = true;
+        view.getViewTreeObserver().addOnPreDrawListener(this);
+    }
+
+    void stopWatching(@NonNull View view) {
+        stopWaiting(view);
+        view.removeOnAttachStateChangeListener(this);
+    }
+
+    private void stopWaiting(@NonNull View view) {
+        if (!waiting) return;
+        waiting = false;
+        ViewTreeObserver observer = view.getViewTreeObserver();
+        if (observer.isAlive()) observer.removeOnPreDrawListener(this);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View view) {
+        // resumed with the next draw, when the window is visible for sure
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View view) {
+        run.suspend(view);
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        View view = run.viewRef.get();
+        if (view == null || !run.isRunning()){
+            waiting = false;
+            return true;
+        }
+        if (isVisible(view)){
+            stopWaiting(view);
+            run.resume(view);
+        }
+        return true;
+    }
+}
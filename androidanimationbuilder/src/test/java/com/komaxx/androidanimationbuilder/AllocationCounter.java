@@ -0,0 +1,80 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the current thread, from the JVM's per-thread allocation
+ * counter. Not every JVM has one: Tests skip themselves (with Assume) when
+ * {@link #isSupported()} is <code>false</code>.
+ */
+final class AllocationCounter {
+    private static final MethodHandle ALLOCATED_BYTES = findAllocatedBytes();
+
+    private AllocationCounter() { }
+
+    /**
+     * HotSpot and OpenJ9 offer the counter as com.sun.management.ThreadMXBean.
+     * Looked up reflectively, so the tests also compile where it is missing. A
+     * method handle, as a reflective call would box, i.e., allocate itself.
+     */
+    private static MethodHandle findAllocatedBytes() {
+        try {
+            Class<?> extended = Class.forName("com.sun.management.ThreadMXBean");
+            Object threads = ManagementFactory.getThreadMXBean();
+            if (!extended.isInstance(threads)) return null;
+
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .findVirtual(extended, "getThreadAllocatedBytes",
+                            MethodType.methodType(long.class, long.class))
+                    .bindTo(threads);
+            // switched off or not supported: -1
+            if ((long) handle.invokeExact(Thread.currentThread().getId()) < 0) return null;
+            return handle;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    static boolean isSupported() {
+        return ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * Bytes allocated by the current thread so far.
+     */
+    static long bytes() {
+        try {
+            return (long) ALLOCATED_BYTES.invokeExact(Thread.currentThread().getId());
+        } catch (Throwable t) {
+            throw new IllegalStateException("Allocation counter failed", t);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.view.View;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Definition calls that are to be ignored, and what compiling drops.
+ */
+public class AndroidAnimationBuilderTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final AndroidAnimationBuilder.AsyncStepHook<Void> NO_WORK =
+            new AndroidAnimationBuilder.AsyncStepHook<Void>() {
+        @Override
+        public Void doInBackground() {
+            return null;
+        }
+
+        @Override
+        public void onDone(View view, Void result) { }
+    };
+
+    @Test
+    public void prepareAsyncOnlyOnce() {
+        AndroidAnimationBuilder builder = new AndroidAnimationBuilder().alpha(0);
+
+        assertNotNull(builder.prepareAsync(DIRECT));
+        assertNull(builder.prepareAsync(DIRECT));
+    }
+
+    @Test
+    public void prepareAsyncNotAfterCompiling() {
+        AndroidAnimationBuilder builder = new AndroidAnimationBuilder().alpha(0);
+        builder.compile();
+
+        assertNull(builder.prepareAsync(DIRECT));
+    }
+
+    @Test
+    public void repeatForeverIgnoresEmptyStep() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .alpha(0).ms(100).then()
+                .repeatForever()
+                .compile();
+
+        assertEquals(1, template.steps.length);
+        assertFalse(template.steps[0] instanceof AndroidAnimationBuilder.LoopStep);
+    }
+
+    @Test
+    public void repeatForeverKeepsTimedStep() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .alpha(0).ms(100)
+                .repeatForever()
+                .compile();
+
+        assertEquals(2, template.steps.length);
+        assertTrue(template.steps[1] instanceof AndroidAnimationBuilder.LoopStep);
+    }
+
+    @Test
+    public void dropsEndlessLoopWithoutTime() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .setDefaultStepDuration(0)
+                .alpha(0)
+                .repeatForever()
+                .beginLoop()
+                .alpha(1).ms(100)
+                .endLoop(3)
+                .compile();
+
+        assertEquals(3, template.steps.length);
+        assertFalse(template.steps[1] instanceof AndroidAnimationBuilder.LoopStep);
+        AndroidAnimationBuilder.LoopStep loop = (AndroidAnimationBuilder.LoopStep) template.steps[2];
+        assertEquals(1, loop.target);
+        assertEquals(2, loop.repeats);
+    }
+
+    @Test
+    public void dropsAsyncLoopWithoutTime() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .beginLoop()
+                .runAsync(DIRECT, NO_WORK)
+                .endLoop(5)
+                .alpha(1).ms(100)
+                .compile();
+
+        assertEquals(2, template.steps.length);
+        assertTrue(template.steps[0] instanceof AndroidAnimationBuilder.AsyncStep);
+        assertFalse(template.steps[1] instanceof AndroidAnimationBuilder.LoopStep);
+    }
+
+    @Test
+    public void keepsAsyncLoopWithTimedStep() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .beginLoop()
+                .runAsync(DIRECT, NO_WORK)
+                .alpha(1).ms(100)
+                .endLoop(5)
+                .compile();
+
+        assertEquals(3, template.steps.length);
+        assertTrue(template.steps[2] instanceof AndroidAnimationBuilder.LoopStep);
+    }
+
+    @Test
+    public void animateIgnoresUnknownPropertyName() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .animate("noSuchProperty", 1)
+                .alpha(0).ms(100)
+                .compile();
+
+        assertEquals(1, template.steps.length);
+        assertEquals(0, template.customProperties.length);
+    }
+
+    @Test
+    public void repetitionsKeepTheStepDuration() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .alpha(0).ms(100)
+                .repeat(3)
+                .compile();
+
+        assertEquals(300, template.getTotalDurationMs());
+    }
+
+    @Test
+    public void laterDurationOnlyAppliesToLastRepetition() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .setDefaultStepDuration(200)
+                .alpha(0)
+                .repeat(3)
+                .ms(100)
+                .compile();
+
+        assertEquals(200 + 200 + 100, template.getTotalDurationMs());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.view.animation.Interpolator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Layout of the step values, and the resulting footprint, see
+ * {@link AndroidAnimationBuilder.AnimationStep#values}.
+ */
+public class AnimationStepTest {
+    private static final int FOOTPRINT_STEPS = 1000;
+
+    @Test
+    public void absoluteValuesNeedOneArrayOnly() {
+        AndroidAnimationBuilder.AnimationStep step = new AndroidAnimationBuilder.AnimationStep();
+        step.setAlpha(0.5f);
+        step.setTranslateX(10);
+        step.setRotateTo(90);
+
+        assertEquals(ViewProperties.COUNT, step.values.length);
+        assertNull(step.byValues);
+        assertTrue(step.isSet(ViewProperties.ALPHA));
+        assertFalse(step.isSet(ViewProperties.SCALE_X));
+        assertEquals(0.5f, step.get(ViewProperties.ALPHA), 0);
+    }
+
+    @Test
+    public void relativeValuesAreAllocatedLazily() {
+        AndroidAnimationBuilder.AnimationStep step = new AndroidAnimationBuilder.AnimationStep();
+        step.setRotateBy(45);
+
+        assertNotNull(step.byValues);
+        assertEquals(ViewProperties.COUNT, step.byValues.length);
+        assertTrue(step.isSet(AndroidAnimationBuilder.AnimationStep.ROTATE_BY));
+        assertFalse(step.isSet(ViewProperties.ROTATION));
+        assertEquals(45, step.get(AndroidAnimationBuilder.AnimationStep.ROTATE_BY), 0);
+    }
+
+    @Test
+    public void relativeValuesAddToTheStartOfTheStep() {
+        AndroidAnimationBuilder.AnimationStep step = new AndroidAnimationBuilder.AnimationStep();
+        step.setRotateBy(45);
+        step.setAlpha(0);
+
+        float[] from = new float[ViewProperties.COUNT];
+        from[ViewProperties.ROTATION] = 10;
+        from[ViewProperties.ALPHA] = 1;
+        float[] to = from.clone();
+        int animated = step.resolveTargets(from, to, null, true);
+
+        assertEquals(55, to[ViewProperties.ROTATION], 0);
+        assertEquals(0, to[ViewProperties.ALPHA], 0);
+        assertEquals((1 << ViewProperties.ROTATION) | (1 << ViewProperties.ALPHA), animated);
+    }
+
+    @Test
+    public void copiesDoNotShareArrays() {
+        AndroidAnimationBuilder.AnimationStep step = new AndroidAnimationBuilder.AnimationStep();
+        step.setScaleX(2);
+        step.setRotateBy(30);
+        AndroidAnimationBuilder.AnimationStep copy = new AndroidAnimationBuilder.AnimationStep(step);
+
+        assertNotSame(step.values, copy.values);
+        assertNotSame(step.byValues, copy.byValues);
+        assertEquals(step, copy);
+        assertEquals(step.hashCode(), copy.hashCode());
+
+        copy.setRotateBy(31);
+        assertFalse(step.equals(copy));
+        assertEquals(30, step.get(AndroidAnimationBuilder.AnimationStep.ROTATE_BY), 0);
+    }
+
+    @Test
+    public void undefinedValuesDoNotAffectEquality() {
+        AndroidAnimationBuilder.AnimationStep a = new AndroidAnimationBuilder.AnimationStep();
+        AndroidAnimationBuilder.AnimationStep b = new AndroidAnimationBuilder.AnimationStep();
+        a.setAlpha(1);
+        b.setAlpha(1);
+        // left-over garbage in an undefined slot
+        b.values[ViewProperties.SCALE_Y] = 3;
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    @Test
+    public void valuesTakeLessMemoryThanBoxedFloats() {
+        assumeTrue("allocation counter not available", AllocationCounter.isSupported());
+        // loads all classes involved
+        measureSteps(1);
+        measureBoxedSteps(1);
+
+        long stepBytes = measureSteps(1);
+        long boxedBytes = measureBoxedSteps(1);
+        for (int valueCount = 2; valueCount <= ViewProperties.COUNT; valueCount++){
+            // setting more values costs nothing
+            assertEquals(stepBytes, measureSteps(valueCount));
+            // one more Float per value
+            assertEquals(boxedBytes + (valueCount - 1) * (boxedBytes - measureBoxedSteps(0)),
+                    measureBoxedSteps(valueCount));
+
+            assertTrue(valueCount + " values: " + stepBytes + " bytes per step, boxed " + boxedBytes,
+                    stepBytes < measureBoxedSteps(valueCount));
+        }
+    }
+
+    /**
+     * Bytes retained per step, with the given number of values set.
+     */
+    private static long measureSteps(int valueCount) {
+        AndroidAnimationBuilder.AnimationStep[] steps = new AndroidAnimationBuilder.AnimationStep[FOOTPRINT_STEPS];
+        long before = AllocationCounter.bytes();
+        for (int i = 0; i < steps.length; i++){
+            AndroidAnimationBuilder.AnimationStep step = new AndroidAnimationBuilder.AnimationStep();
+            for (int v = 0; v < valueCount; v++){
+                step.set(v, i + 0.5f);
+            }
+            steps[i] = step;
+        }
+        return (AllocationCounter.bytes() - before) / steps.length;
+    }
+
+    private static long measureBoxedSteps(int valueCount) {
+        BoxedStep[] steps = new BoxedStep[FOOTPRINT_STEPS];
+        long before = AllocationCounter.bytes();
+        for (int i = 0; i < steps.length; i++){
+            BoxedStep step = new BoxedStep();
+            for (int v = 0; v < valueCount; v++){
+                step.set(v, i + 0.5f);
+            }
+            steps[i] = step;
+        }
+        return (AllocationCounter.bytes() - before) / steps.length;
+    }
+
+    /**
+     * The fields of {@link AndroidAnimationBuilder.AnimationStep}, but with the
+     * values stored as before the float array: One nullable Float per property.
+     */
+    @SuppressWarnings("unused")
+    private static final class BoxedStep {
+        boolean resetting;
+
+        Float rotateByDegrees;
+        Float rotateToDegrees;
+        Float translationX;
+        Float translationY;
+        Float translationZ;
+        Float scaleX;
+        Float scaleY;
+        Float alpha;
+
+        AndroidAnimationBuilder.AnimationStepHook preStep;
+        AndroidAnimationBuilder.AnimationStepHook postStep;
+        Interpolator interpolator;
+        PathTable path;
+        boolean rotateAlongPath;
+        AnimatableProperty[] customProperties;
+        double[] customValues;
+        int durationMs;
+
+        void set(int property, float value) {
+            switch (property) {
+                case ViewProperties.ROTATION: rotateToDegrees = value; break;
+                case ViewProperties.TRANSLATION_X: translationX = value; break;
+                case ViewProperties.TRANSLATION_Y: translationY = value; break;
+                case ViewProperties.TRANSLATION_Z: translationZ = value; break;
+                case ViewProperties.SCALE_X: scaleX = value; break;
+                case ViewProperties.SCALE_Y: scaleY = value; break;
+                case ViewProperties.ALPHA: alpha = value; break;
+            }
+        }
+    }
+}
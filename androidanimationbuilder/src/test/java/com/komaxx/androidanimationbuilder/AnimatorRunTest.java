@@ -0,0 +1,195 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.animation.Animator;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Steady state of the {@link AndroidAnimationBuilder.Engine#VIEW_PROPERTY_ANIMATOR}
+ * engine: Entering and finishing steps must not allocate. A looping chain of 100
+ * steps (animations, pauses and hooks) is played through a host that ends each
+ * animation with its next callback, measured with the JVM's per-thread
+ * allocation counter after a warm-up. What the framework's animators allocate
+ * is up to the framework.
+ */
+public class AnimatorRunTest {
+    private static final int GROUPS = 20;
+    /**
+     * Five steps per group, four of them animated.
+     */
+    private static final int STEPS = GROUPS * 5;
+    private static final int WARM_UP_PASSES = 200;
+    private static final int MEASURED_PASSES = 20;
+
+    private int hookCalls;
+
+    @After
+    public void tearDown() {
+        AnimationTemplate.clearCache();
+    }
+
+    @Test
+    public void stepsDoNotAllocate() {
+        assumeTrue("allocation counter not available", AllocationCounter.isSupported());
+
+        AnimationTemplate template = chain();
+        // the loop jumping back is a step of its own
+        assertEquals(STEPS + 1, template.steps.length);
+
+        PropertyView view = new PropertyView();
+        QueueHost host = new QueueHost();
+        AnimatorRun run = new AnimatorRun(template, view, host);
+        run.start();
+
+        host.playSteps(WARM_UP_PASSES * STEPS);
+
+        long before = AllocationCounter.bytes();
+        host.playSteps(MEASURED_PASSES * STEPS);
+        long allocated = AllocationCounter.bytes() - before;
+
+        assertEquals("allocated bytes", 0, allocated);
+        int passes = WARM_UP_PASSES + MEASURED_PASSES;
+        assertEquals(passes * GROUPS, hookCalls);
+        // the first animation of the next pass was just started
+        assertEquals(passes * GROUPS * 4 + 1, host.animations);
+        // so the view is still where the last group ended
+        assertEquals(0, view.getTranslationX(), 0);
+        assertEquals(1, view.getAlpha(), 0);
+
+        run.cancel();
+    }
+
+    private AnimationTemplate chain() {
+        AndroidAnimationBuilder.AnimationStepHook hook = new AndroidAnimationBuilder.AnimationStepHook() {
+            @Override
+            public void run(@NonNull View view) {
+                hookCalls++;
+            }
+        };
+
+        AndroidAnimationBuilder builder = new AndroidAnimationBuilder()
+                .setAllowLayerAdjustmentForAnimation(false)
+                .engine(AndroidAnimationBuilder.Engine.VIEW_PROPERTY_ANIMATOR)
+                .setDefaultStepDuration(100)
+                .beginLoop();
+        for (int i = 0; i < GROUPS; i++){
+            builder.translateX(100)
+                    .then().alpha(0.5f)
+                    .pause(50)
+                    .run(hook).translateX(0).rotateBy(10)
+                    .then().alpha(1)
+                    .then();
+        }
+        return builder.endLoopForever().compile();
+    }
+
+    /**
+     * Runs posted runnables right away instead of after their delay, and ends
+     * each animation with the next callback: The animated properties jump to
+     * their targets. The queue is a preallocated ring, so nothing here allocates.
+     */
+    private static final class QueueHost implements AnimatorRun.Host {
+        private final Runnable[] queue = new Runnable[16];
+        private int head;
+        private int size;
+
+        @Nullable private View animatedView;
+        @Nullable private Animator.AnimatorListener listener;
+        private int animatedMask;
+        private final float[] to = new float[ViewProperties.COUNT];
+
+        int animations;
+
+        @Override
+        public long nanoTime() {
+            return 0;
+        }
+
+        @Override
+        public void postDelayed(@NonNull View view, @NonNull Runnable action, long delayMs) {
+            queue[(head + size++) % queue.length] = action;
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull View view, @NonNull Runnable action) { }
+
+        @Override
+        public void animate(@NonNull View view, int mask, @NonNull float[] to, @NonNull Interpolator interpolator,
+                            long durationMs, @NonNull Animator.AnimatorListener listener) {
+            animatedView = view;
+            this.listener = listener;
+            animatedMask = mask;
+            System.arraycopy(to, 0, this.to, 0, ViewProperties.COUNT);
+            animations++;
+        }
+
+        @Override
+        public void stopAnimation(@NonNull View view) {
+            animatedView = null;
+            listener = null;
+        }
+
+        /**
+         * Each step takes two callbacks: Its end (animation or delay), then
+         * posting the next one.
+         */
+        void playSteps(int count) {
+            for (int i = 0; i < 2 * count; i++){
+                if (listener != null){
+                    assertEquals("pending callbacks", 0, size);
+                    endAnimation();
+                } else {
+                    assertEquals("pending callbacks", 1, size);
+                    Runnable next = queue[head];
+                    queue[head] = null;
+                    head = (head + 1) % queue.length;
+                    size--;
+                    next.run();
+                }
+            }
+        }
+
+        private void endAnimation() {
+            for (int i = 0; i < ViewProperties.COUNT; i++){
+                if ((animatedMask & (1 << i)) != 0) ViewProperties.set(animatedView, i, to[i]);
+            }
+            Animator.AnimatorListener ended = listener;
+            animatedView = null;
+            listener = null;
+            ended.onAnimationEnd(null);
+        }
+    }
+}
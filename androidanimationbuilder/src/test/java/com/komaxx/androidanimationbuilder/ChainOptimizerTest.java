@@ -0,0 +1,443 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Optimized chains must play exactly like the original ones: Each test plays
+ * both versions with a minimal interpreter (steps, hooks, loop jumps on a
+ * virtual clock) and compares what happened when. The last tests play whole
+ * templates with and without {@link AndroidAnimationBuilder#setOptimizeChain}
+ * in the {@link FrameSimulator} and compare the frames.
+ */
+public class ChainOptimizerTest {
+    /**
+     * The framework's interpolators only return 0 in unit tests.
+     */
+    private static final Interpolator LINEAR = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input;
+        }
+    };
+
+    private final ArrayList<String> trace = new ArrayList<>();
+    private long nowMs;
+
+    @After
+    public void tearDown() {
+        AnimationTemplate.clearCache();
+    }
+
+    @Test
+    public void mergesAdjacentPauses() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = chain(
+                animation(0.5f, 100),
+                pause(50),
+                pause(70),
+                animation(1, 100));
+
+        List<String> optimized = assertEquivalent(steps);
+
+        assertEquals(3, steps.size());
+        assertEquals(120, steps.get(1).durationMs);
+        assertEquals(Arrays.asList("alpha 0.5 0-100", "alpha 1.0 220-320"), optimized);
+    }
+
+    @Test
+    public void keepsPausesSeparatedByHooks() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = chain(
+                pause(50),
+                withPost(pause(50), "a"),
+                withPre(pause(50), "b"),
+                pause(50));
+
+        List<String> optimized = assertEquivalent(steps);
+
+        // the hooks must keep their time, so only the outer pauses are merged
+        assertEquals(2, steps.size());
+        assertEquals(Arrays.asList("a 100", "b 100"), optimized);
+    }
+
+    @Test
+    public void foldsHooksIntoThePreviousStepInOrder() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = chain(
+                withPost(animation(0.5f, 100), "a"),
+                withPost(withPre(pause(0), "b"), "c"),
+                withPre(pause(0), "d"),
+                animation(1, 100));
+
+        List<String> optimized = assertEquivalent(steps);
+
+        assertEquals(2, steps.size());
+        assertTrue(steps.get(0).postStep instanceof ChainOptimizer.ChainedHook);
+        assertEquals(Arrays.asList("alpha 0.5 0-100", "a 100", "b 100", "c 100", "d 100",
+                "alpha 1.0 100-200"), optimized);
+    }
+
+    @Test
+    public void foldedHookStepsLoseTheirMillisecond() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = chain(
+                animation(0.5f, 100),
+                withPre(pause(1), "a"),
+                animation(1, 100));
+
+        List<String> original = play(steps);
+        ChainOptimizer.optimize(steps);
+
+        // the one deliberate difference: 1 ms steps count as taking no time
+        assertEquals(Arrays.asList("alpha 0.5 0-100", "a 100", "alpha 1.0 101-201"), original);
+        assertEquals(Arrays.asList("alpha 0.5 0-100", "a 100", "alpha 1.0 100-200"), play(steps));
+    }
+
+    @Test
+    public void chainedHooksEqualByTheirParts() {
+        AndroidAnimationBuilder.AnimationStepHook a = hook("a");
+        AndroidAnimationBuilder.AnimationStepHook b = hook("b");
+
+        assertEquals(ChainOptimizer.ChainedHook.chain(a, null, b), ChainOptimizer.ChainedHook.chain(a, b));
+        assertEquals(ChainOptimizer.ChainedHook.chain(a, b).hashCode(),
+                ChainOptimizer.ChainedHook.chain(null, a, b).hashCode());
+        assertEquals(a, ChainOptimizer.ChainedHook.chain(null, a, null));
+        assertEquals(null, ChainOptimizer.ChainedHook.chain(null, null));
+    }
+
+    @Test
+    public void remapsLoopTargets() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = chain(
+                pause(20),
+                pause(30),
+                animation(0.5f, 100),
+                withPre(pause(0), "a"),
+                animation(1, 100),
+                loop(2, 2));
+
+        assertEquivalent(steps);
+
+        AndroidAnimationBuilder.LoopStep loop = (AndroidAnimationBuilder.LoopStep) steps.get(steps.size() - 1);
+        assertEquals(1, loop.target);
+        assertEquals(4, steps.size());
+    }
+
+    @Test
+    public void doesNotMergeIntoLoopTargets() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = chain(
+                pause(20),
+                pause(30),
+                animation(0.5f, 100),
+                loop(1, 1));
+
+        List<String> optimized = assertEquivalent(steps);
+
+        // the jump must still land on the second pause only
+        assertEquals(Arrays.asList("alpha 0.5 50-150", "alpha 0.5 180-280"), optimized);
+    }
+
+    @Test
+    public void remapsNestedLoopTargets() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = chain(
+                pause(10),
+                pause(10),
+                withPost(animation(0.2f, 50), "outer"),
+                pause(5),
+                pause(5),
+                animation(0.4f, 50),
+                withPre(pause(0), "inner"),
+                pause(5),
+                pause(5),
+                loop(5, 2),
+                animation(0.6f, 50),
+                loop(2, 1));
+
+        assertEquivalent(steps);
+
+        AndroidAnimationBuilder.LoopStep inner = null;
+        AndroidAnimationBuilder.LoopStep outer = null;
+        for (AndroidAnimationBuilder.AnimationStep step : steps) {
+            if (!(step instanceof AndroidAnimationBuilder.LoopStep)) continue;
+            if (inner == null) inner = (AndroidAnimationBuilder.LoopStep) step;
+            else outer = (AndroidAnimationBuilder.LoopStep) step;
+        }
+        assertEquals(0.4f, steps.get(inner.target).get(ViewProperties.ALPHA), 0);
+        assertEquals(0.2f, steps.get(outer.target).get(ViewProperties.ALPHA), 0);
+    }
+
+    @Test
+    public void optimizedTimelinePlaysTheSameFrames() {
+        AnimationTemplate optimized = pausesHookAndReachedTarget(true);
+        assertSameFrames(pausesHookAndReachedTarget(false), optimized);
+        // the pauses were merged
+        assertEquals(5, optimized.steps.length);
+    }
+
+    @Test
+    public void resetOfMostlyDefaultViewPlaysTheSameFrames() {
+        assertSameFrames(moveAndReset(false), moveAndReset(true));
+    }
+
+    @Test
+    public void resetOnlyAnimatesWhatMoved() {
+        AndroidAnimationBuilder.AnimationStep reset = moveAndReset(true).steps[2];
+        AndroidAnimationBuilder.StartState startState = new AndroidAnimationBuilder.StartState(new PropertyView());
+        float[] from = startState.values.clone();
+        from[ViewProperties.TRANSLATION_X] = 100;
+        from[ViewProperties.ALPHA] = 0.5f;
+        float[] to = new float[ViewProperties.COUNT];
+
+        assertEquals((1 << ViewProperties.TRANSLATION_X) | (1 << ViewProperties.ALPHA),
+                reset.resolveTargets(from, to, startState, true));
+        assertEquals(ViewProperties.ALL, reset.resolveTargets(from, to, startState, false));
+    }
+
+    @Test
+    public void foldedHookKeepsItsFrame() {
+        List<FrameSimulator.Frame> original = simulate(foldableHook(false));
+        List<String> originalTrace = new ArrayList<>(trace);
+        trace.clear();
+        AnimationTemplate optimizedTemplate = foldableHook(true);
+        List<FrameSimulator.Frame> optimized = simulate(optimizedTemplate);
+
+        assertEquals(2, optimizedTemplate.steps.length);
+        assertEquals(originalTrace, trace);
+        assertEquals(original.size(), optimized.size());
+        for (int i = 0; i < original.size(); i++){
+            float[] expected = original.get(i).values;
+            float[] actual = optimized.get(i).values;
+            // the hook runs in the same frame...
+            assertEquals("frame " + i, expected[ViewProperties.SCALE_Y], actual[ViewProperties.SCALE_Y], 0);
+            // ...but the next step starts 1ms earlier: 1px at 1px/ms
+            assertEquals("frame " + i, expected[ViewProperties.TRANSLATION_X],
+                    actual[ViewProperties.TRANSLATION_X], 1.001f);
+        }
+    }
+
+    @Test
+    public void optimizedAnimatorsEndTheSameAndNoLater() {
+        FrameSimulator.Report original = new FrameSimulator(animatorChain(false)).run(new PropertyView());
+        FrameSimulator.Report optimized = new FrameSimulator(animatorChain(true)).run(new PropertyView());
+
+        // merged pauses and steps with nothing left to animate don't wait for
+        // extra posts or an animator's frames
+        assertTrue(optimized + "\n" + original, optimized.getEndMs() < original.getEndMs());
+        List<FrameSimulator.Frame> originalFrames = original.getFrames();
+        List<FrameSimulator.Frame> optimizedFrames = optimized.getFrames();
+        assertArrayEquals(originalFrames.get(originalFrames.size() - 1).values,
+                optimizedFrames.get(optimizedFrames.size() - 1).values, 0);
+    }
+
+    /**
+     * Pauses to merge, a hook, and a step whose target is already reached.
+     */
+    private AnimationTemplate pausesHookAndReachedTarget(boolean optimize) {
+        return new AndroidAnimationBuilder()
+                .engine(AndroidAnimationBuilder.Engine.TIMELINE)
+                .setOptimizeChain(optimize)
+                .translateX(100).interpolate(LINEAR).ms(100)
+                .pause(50)
+                .pause(50)
+                .run(marker(2)).alpha(0.5f).interpolate(LINEAR).ms(100)
+                .then().translateX(100).interpolate(LINEAR).ms(100)
+                .then().translateX(0).interpolate(LINEAR).ms(100)
+                .compile();
+    }
+
+    /**
+     * Resets a view on which only translationX and alpha (and the hook's
+     * scaleY) left their defaults.
+     */
+    private AnimationTemplate moveAndReset(boolean optimize) {
+        return new AndroidAnimationBuilder()
+                .engine(AndroidAnimationBuilder.Engine.TIMELINE)
+                .setOptimizeChain(optimize)
+                .translateX(100).alpha(0.5f).interpolate(LINEAR).ms(100)
+                .then().run(marker(2)).interpolate(LINEAR).ms(100)
+                .then().reset().interpolate(LINEAR).ms(100)
+                .compile();
+    }
+
+    private AnimationTemplate foldableHook(boolean optimize) {
+        return new AndroidAnimationBuilder()
+                .engine(AndroidAnimationBuilder.Engine.TIMELINE)
+                .setOptimizeChain(optimize)
+                .translateX(100).interpolate(LINEAR).ms(100)
+                .then().run(marker(2)).ms(1)
+                .then().translateX(0).interpolate(LINEAR).ms(100)
+                .compile();
+    }
+
+    private AnimationTemplate animatorChain(boolean optimize) {
+        return new AndroidAnimationBuilder()
+                .engine(AndroidAnimationBuilder.Engine.VIEW_PROPERTY_ANIMATOR)
+                .setOptimizeChain(optimize)
+                .translateX(100).alpha(0.5f).interpolate(LINEAR).ms(100)
+                .pause(50)
+                .pause(50)
+                .then().translateX(100).interpolate(LINEAR).ms(100)
+                .then().reset().interpolate(LINEAR).ms(100)
+                .compile();
+    }
+
+    // //////////////////////////////////////////////////////////////////////
+    // helpers
+
+    /**
+     * Plays both templates and checks that every frame and every hook call
+     * is the same.
+     */
+    private void assertSameFrames(AnimationTemplate originalTemplate, AnimationTemplate optimizedTemplate) {
+        List<FrameSimulator.Frame> original = simulate(originalTemplate);
+        List<String> originalTrace = new ArrayList<>(trace);
+        trace.clear();
+        List<FrameSimulator.Frame> optimized = simulate(optimizedTemplate);
+
+        assertEquals(originalTrace, trace);
+        assertEquals(original.size(), optimized.size());
+        for (int i = 0; i < original.size(); i++){
+            assertArrayEquals("frame " + i, original.get(i).values, optimized.get(i).values, 0);
+        }
+    }
+
+    private List<FrameSimulator.Frame> simulate(AnimationTemplate template) {
+        nowMs = 0;
+        return new FrameSimulator(template).run(new PropertyView()).getFrames();
+    }
+
+    /**
+     * A hook that leaves a mark in the frames: scaleY, which the chains
+     * don't animate otherwise.
+     */
+    private AndroidAnimationBuilder.AnimationStepHook marker(final float scaleY) {
+        return new AndroidAnimationBuilder.AnimationStepHook() {
+            @Override
+            public void run(@NonNull View view) {
+                view.setScaleY(scaleY);
+                trace.add("scaleY " + scaleY);
+            }
+        };
+    }
+
+    /**
+     * Optimizes the steps in place and checks that they play as before.
+     *
+     * @return  The trace of the optimized chain.
+     */
+    private List<String> assertEquivalent(ArrayList<AndroidAnimationBuilder.AnimationStep> steps) {
+        List<String> original = play(steps);
+        ChainOptimizer.optimize(steps);
+        List<String> optimized = play(steps);
+        assertEquals(original, optimized);
+        return optimized;
+    }
+
+    /**
+     * Plays the steps like the engines do: Hooks before and after each step,
+     * loop jumps with counters that start over when the loop is done.
+     */
+    private List<String> play(ArrayList<AndroidAnimationBuilder.AnimationStep> steps) {
+        trace.clear();
+        nowMs = 0;
+        int[] jumps = new int[steps.size()];
+
+        int i = 0;
+        while (i < steps.size()){
+            AndroidAnimationBuilder.AnimationStep step = steps.get(i);
+            if (step instanceof AndroidAnimationBuilder.LoopStep){
+                AndroidAnimationBuilder.LoopStep loop = (AndroidAnimationBuilder.LoopStep) step;
+                if (jumps[i] < loop.repeats){
+                    jumps[i]++;
+                    i = loop.target;
+                } else {
+                    jumps[i] = 0;
+                    i++;
+                }
+                continue;
+            }
+
+            if (step.preStep != null) step.preStep.run(null);
+            if (step.hasAnimation()){
+                trace.add("alpha " + step.get(ViewProperties.ALPHA)
+                        + " " + nowMs + "-" + (nowMs + step.durationMs));
+            }
+            nowMs += step.durationMs;
+            if (step.postStep != null) step.postStep.run(null);
+            i++;
+        }
+        return new ArrayList<>(trace);
+    }
+
+    private static ArrayList<AndroidAnimationBuilder.AnimationStep> chain(AndroidAnimationBuilder.AnimationStep... steps) {
+        return new ArrayList<>(Arrays.asList(steps));
+    }
+
+    private static AndroidAnimationBuilder.AnimationStep animation(float alpha, int ms) {
+        AndroidAnimationBuilder.AnimationStep step = pause(ms);
+        step.setAlpha(alpha);
+        return step;
+    }
+
+    private static AndroidAnimationBuilder.AnimationStep pause(int ms) {
+        AndroidAnimationBuilder.AnimationStep step = new AndroidAnimationBuilder.AnimationStep();
+        step.durationMs = ms;
+        return step;
+    }
+
+    private static AndroidAnimationBuilder.LoopStep loop(int target, int repeats) {
+        return new AndroidAnimationBuilder.LoopStep(target, repeats);
+    }
+
+    private AndroidAnimationBuilder.AnimationStep withPre(AndroidAnimationBuilder.AnimationStep step, String name) {
+        step.setPreStep(hook(name));
+        return step;
+    }
+
+    private AndroidAnimationBuilder.AnimationStep withPost(AndroidAnimationBuilder.AnimationStep step, String name) {
+        step.setPostStep(hook(name));
+        return step;
+    }
+
+    private AndroidAnimationBuilder.AnimationStepHook hook(final String name) {
+        return new AndroidAnimationBuilder.AnimationStepHook() {
+            @Override
+            public void run(@NonNull View view) {
+                trace.add(name + " " + nowMs);
+            }
+        };
+    }
+}
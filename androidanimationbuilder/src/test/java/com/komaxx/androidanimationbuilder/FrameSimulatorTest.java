@@ -0,0 +1,116 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.view.animation.Interpolator;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * What the {@link FrameSimulator} reports for both engines: The timeline keeps
+ * the planned timing, chained ViewPropertyAnimators lose a frame at each step
+ * boundary. And that injected jank shows.
+ */
+public class FrameSimulatorTest {
+    private static final float FRAME_MS = 1000f / 60;
+
+    /**
+     * The framework's interpolators only return 0 in unit tests.
+     */
+    private static final Interpolator LINEAR = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        AnimationTemplate.clearCache();
+    }
+
+    @Test
+    public void timelineKeepsThePlannedTiming() {
+        FrameSimulator.Report report = new FrameSimulator(zigZag(AndroidAnimationBuilder.Engine.TIMELINE))
+                .run(new PropertyView());
+
+        assertEquals(report.toString(), 0, report.getGaps().size());
+        assertEquals(report.toString(), 0, report.getStalledFrames().size());
+        assertEquals(0, report.getDroppedFrameCount());
+        assertTrue(report.toString(), Math.abs(report.getDurationDriftMs()) <= FRAME_MS);
+    }
+
+    @Test
+    public void chainedAnimatorsLoseFramesBetweenSteps() {
+        PropertyView view = new PropertyView();
+        FrameSimulator.Report report = new FrameSimulator(zigZag(AndroidAnimationBuilder.Engine.VIEW_PROPERTY_ANIMATOR))
+                .run(view);
+
+        // each step waits for the first vsync after the previous one ended,
+        // at least one frame per step boundary shows no movement
+        assertTrue(report.toString(), report.getStalledFrames().size() >= 4);
+        assertFalse(report.toString(), report.getGaps().isEmpty());
+        assertTrue(report.toString(), report.getDurationDriftMs() > 3 * FRAME_MS);
+        assertEquals(0, report.getDroppedFrameCount());
+        // late, but where it should be
+        assertEquals(100, view.getTranslationX(), 0);
+    }
+
+    @Test
+    public void droppedFramesShowAsGap() {
+        // frames 6 and 7 would show the second step first
+        FrameSimulator.Report report = new FrameSimulator(zigZag(AndroidAnimationBuilder.Engine.TIMELINE))
+                .dropFrames(6, 7)
+                .run(new PropertyView());
+
+        assertEquals(2, report.getDroppedFrameCount());
+        assertEquals(report.toString(), 1, report.getGaps().size());
+        assertEquals(1, report.getGaps().get(0).stepIndex);
+        // the timeline catches up, nothing is stuck
+        assertEquals(report.toString(), 0, report.getStalledFrames().size());
+        assertTrue(report.toString(), Math.abs(report.getDurationDriftMs()) <= FRAME_MS);
+    }
+
+    /**
+     * Five linear 100ms steps, moving back and forth.
+     */
+    private static AnimationTemplate zigZag(AndroidAnimationBuilder.Engine engine) {
+        return new AndroidAnimationBuilder()
+                .engine(engine)
+                .setAllowLayerAdjustmentForAnimation(false)
+                .translateX(100).interpolate(LINEAR).ms(100)
+                .then().translateX(0).interpolate(LINEAR).ms(100)
+                .then().translateX(100).interpolate(LINEAR).ms(100)
+                .then().translateX(0).interpolate(LINEAR).ms(100)
+                .then().translateX(100).interpolate(LINEAR).ms(100)
+                .compile();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.view.animation.Interpolator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Accuracy of baked interpolators. The framework's curves are not available in
+ * unit tests, so they are replaced by the very same formulas in plain Java.
+ */
+public class InterpolatorsTest {
+    /**
+     * Max. deviation of a curve baked with {@link Interpolators#DEFAULT_SAMPLE_COUNT}
+     * samples, as documented there.
+     */
+    private static final float BOUND = 1e-5f;
+
+    private static final Interpolator ACCELERATE_DECELERATE = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return (float) (Math.cos((input + 1) * Math.PI) / 2.0f) + 0.5f;
+        }
+    };
+
+    private static final Interpolator ACCELERATE = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input * input;
+        }
+    };
+
+    private static final Interpolator DECELERATE = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return 1.0f - (1.0f - input) * (1.0f - input);
+        }
+    };
+
+    @Test
+    public void accelerateDecelerateStaysWithinBound() {
+        assertMaxError(ACCELERATE_DECELERATE);
+    }
+
+    @Test
+    public void accelerateStaysWithinBound() {
+        assertMaxError(ACCELERATE);
+    }
+
+    @Test
+    public void decelerateStaysWithinBound() {
+        assertMaxError(DECELERATE);
+    }
+
+    @Test
+    public void endsAreExact() {
+        Interpolator baked = Interpolators.bake(ACCELERATE_DECELERATE, 3);
+        assertEquals(0, baked.getInterpolation(0), 0);
+        assertEquals(1, baked.getInterpolation(1), 0);
+        assertEquals(0, baked.getInterpolation(-1), 0);
+        assertEquals(1, baked.getInterpolation(2), 0);
+    }
+
+    @Test
+    public void bakingIsCachedPerInstance() {
+        Interpolators.BakedInterpolator baked = Interpolators.bake(DECELERATE);
+        assertSame(baked, Interpolators.bake(DECELERATE));
+        assertSame(baked, Interpolators.bake(baked));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsTwoSamples() {
+        Interpolators.bake(ACCELERATE, 1);
+    }
+
+    private static void assertMaxError(Interpolator curve) {
+        Interpolator baked = Interpolators.bake(curve);
+        // many more points than samples, most of them between two samples
+        int points = 100000;
+        for (int i = 0; i <= points; i++){
+            float input = i / (float) points;
+            assertEquals("at " + input, curve.getInterpolation(input),
+                    baked.getInterpolation(input), BOUND);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Conflicts of parallel tracks: The track ending last wins, tracks of the same
+ * length in order of definition. And how tracks are told apart when measured.
+ */
+public class ParallelTracksTest {
+    @Test
+    public void tracksAreOrderedByEndTime() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .alpha(0.2f).ms(900)
+                .parallel()
+                .alpha(0.8f).ms(100)
+                .parallel()
+                .scaleX(2).ms(900)
+                .parallel()
+                .beginLoop().rotateBy(10).ms(100).endLoopForever()
+                .compile();
+
+        assertArrayEquals(new int[]{1, 0, 2, 3}, template.trackOrder);
+    }
+
+    @Test
+    public void longerTrackWinsTheEndState() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .alpha(0.2f).ms(900)
+                .parallel()
+                .alpha(0.8f).ms(100)
+                .compile();
+
+        ViewState end = template.computeEndState(ViewState.clean());
+
+        assertEquals(0.2f, end.getAlpha(), 0);
+    }
+
+    @Test
+    public void tracksOfTheSameLengthKeepTheirOrder() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .alpha(0.2f).ms(300)
+                .parallel()
+                .alpha(0.8f).ms(300)
+                .compile();
+
+        ViewState end = template.computeEndState(ViewState.clean());
+
+        assertEquals(0.8f, end.getAlpha(), 0);
+    }
+
+    @Test
+    public void traceSectionsNameTheTrack() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .setMetricsListener(new AnimationMetricsListener() {
+                    @Override
+                    public void onStepMeasured(@NonNull StepMetrics metrics) { }
+                })
+                .alpha(0.2f).ms(300)
+                .then().alpha(1).ms(300)
+                .parallel()
+                .scaleX(2).ms(300)
+                .compile();
+
+        assertEquals(2, template.traceSectionNames.length);
+        assertArrayEquals(new String[]{"AnimationBuilder step 0", "AnimationBuilder step 1"},
+                template.traceSectionNames[0]);
+        assertArrayEquals(new String[]{"AnimationBuilder track 1 step 0"},
+                template.traceSectionNames[1]);
+    }
+}
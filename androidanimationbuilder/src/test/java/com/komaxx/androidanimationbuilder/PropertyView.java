@@ -0,0 +1,67 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.view.View;
+
+/**
+ * A view that keeps the properties the builder animates. The views of the unit
+ * test android.jar only return 0. Starts like a fresh view: Scaled by 1, opaque.
+ */
+class PropertyView extends View {
+    private float rotation;
+    private float translationX;
+    private float translationY;
+    private float translationZ;
+    private float scaleX = 1;
+    private float scaleY = 1;
+    private float alpha = 1;
+
+    PropertyView() {
+        super(null);
+    }
+
+    @Override public float getRotation() { return rotation; }
+    @Override public void setRotation(float rotation) { this.rotation = rotation; }
+
+    @Override public float getTranslationX() { return translationX; }
+    @Override public void setTranslationX(float translationX) { this.translationX = translationX; }
+
+    @Override public float getTranslationY() { return translationY; }
+    @Override public void setTranslationY(float translationY) { this.translationY = translationY; }
+
+    @Override public float getTranslationZ() { return translationZ; }
+    @Override public void setTranslationZ(float translationZ) { this.translationZ = translationZ; }
+
+    @Override public float getScaleX() { return scaleX; }
+    @Override public void setScaleX(float scaleX) { this.scaleX = scaleX; }
+
+    @Override public float getScaleY() { return scaleY; }
+    @Override public void setScaleY(float scaleY) { this.scaleY = scaleY; }
+
+    @Override public float getAlpha() { return alpha; }
+    @Override public void setAlpha(float alpha) { this.alpha = alpha; }
+}
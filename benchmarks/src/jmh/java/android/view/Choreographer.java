@@ -0,0 +1,155 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package android.view;
+
+/**
+ * Stand-in for the framework's Choreographer, which the android.jar of unit
+ * tests only stubs. Shaped like the framework's callback queue, so that the
+ * cost per posted callback is comparable: Posting takes a pooled record under
+ * a lock and links it into the queue, a frame takes all records out under the
+ * lock, runs them, and returns them to the pool.
+ * <br/>
+ * Frames are not triggered by a display but by {@link #doFrame(long)}.
+ */
+public final class Choreographer {
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final ThreadLocal<Choreographer> instances = new ThreadLocal<Choreographer>() {
+        @Override
+        protected Choreographer initialValue() {
+            return new Choreographer();
+        }
+    };
+
+    private final Object lock = new Object();
+    private CallbackRecord head;
+    private CallbackRecord tail;
+    private CallbackRecord pool;
+
+    private Choreographer() { }
+
+    public static Choreographer getInstance() {
+        return instances.get();
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+        postFrameCallbackDelayed(callback, 0);
+    }
+
+    /**
+     * The delay is ignored: Callbacks run on the next frame.
+     */
+    public void postFrameCallbackDelayed(FrameCallback callback, long delayMillis) {
+        synchronized (lock) {
+            CallbackRecord record = obtain(callback);
+            if (tail == null){
+                head = record;
+            } else {
+                tail.next = record;
+            }
+            tail = record;
+        }
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+        synchronized (lock) {
+            CallbackRecord previous = null;
+            CallbackRecord record = head;
+            while (record != null){
+                CallbackRecord next = record.next;
+                if (record.callback == callback){
+                    if (previous == null) head = next;
+                    else previous.next = next;
+                    if (record == tail) tail = previous;
+                    recycle(record);
+                } else {
+                    previous = record;
+                }
+                record = next;
+            }
+        }
+    }
+
+    /**
+     * Runs all callbacks posted before this frame. Callbacks posted while
+     * running are left for the next one.
+     */
+    public void doFrame(long frameTimeNanos) {
+        CallbackRecord callbacks;
+        synchronized (lock) {
+            callbacks = head;
+            head = null;
+            tail = null;
+        }
+
+        for (CallbackRecord record = callbacks; record != null; record = record.next){
+            record.callback.doFrame(frameTimeNanos);
+        }
+
+        synchronized (lock) {
+            while (callbacks != null){
+                CallbackRecord next = callbacks.next;
+                recycle(callbacks);
+                callbacks = next;
+            }
+        }
+    }
+
+    /**
+     * Drops all pending callbacks.
+     */
+    public void clear() {
+        synchronized (lock) {
+            head = null;
+            tail = null;
+        }
+    }
+
+    private CallbackRecord obtain(FrameCallback callback) {
+        CallbackRecord record = pool;
+        if (record == null){
+            record = new CallbackRecord();
+        } else {
+            pool = record.next;
+        }
+        record.callback = callback;
+        record.next = null;
+        return record;
+    }
+
+    private void recycle(CallbackRecord record) {
+        record.callback = null;
+        record.next = pool;
+        pool = record;
+    }
+
+    private static final class CallbackRecord {
+        CallbackRecord next;
+        FrameCallback callback;
+    }
+}
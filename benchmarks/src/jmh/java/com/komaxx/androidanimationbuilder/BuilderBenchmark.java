@@ -0,0 +1,102 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defining and compiling a typical chain: A few transforms, a loop, pauses and
+ * a hook. The builders have no view, so nothing is played.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BuilderBenchmark {
+    /**
+     * Any hook but CLEAN keeps a template out of the intern cache.
+     */
+    private static final AndroidAnimationBuilder.AnimationStepHook HOOK =
+            new AndroidAnimationBuilder.AnimationStepHook() {
+                @Override
+                public void run(@NonNull View view) { }
+            };
+
+    @Setup
+    public void setUp() {
+        AnimationTemplate.clearCache();
+    }
+
+    /**
+     * Only the builder calls, no compiling.
+     */
+    @Benchmark
+    public AndroidAnimationBuilder buildChain() {
+        return defineChain(AndroidAnimationBuilder.CLEAN);
+    }
+
+    /**
+     * Compiling the same definition again: Found in the intern cache after
+     * the first call, so mostly hashing and comparing steps.
+     */
+    @Benchmark
+    public AnimationTemplate compileInterned() {
+        return defineChain(AndroidAnimationBuilder.CLEAN).compile();
+    }
+
+    /**
+     * Full compile: Templates with hooks are not interned.
+     */
+    @Benchmark
+    public AnimationTemplate compileNotInterned() {
+        return defineChain(HOOK).compile();
+    }
+
+    private static AndroidAnimationBuilder defineChain(AndroidAnimationBuilder.AnimationStepHook hook) {
+        return new AndroidAnimationBuilder()
+                .setDefaultStepDuration(120)
+                .alpha(0.5f).scaleX(1.2f).scaleY(1.2f)
+                .then().beginLoop()
+                .rotateBy(6)
+                .then().rotateBy(-12)
+                .then().rotateBy(6)
+                .endLoop(3)
+                .pause(100)
+                .pause(100)
+                .run(hook).translateY(-40).decelerate()
+                .then().reset().ms(200);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChainOptimizer#optimize} on a chain with something to do for each of
+ * its rules: Pauses to merge, hook-only steps to fold, loop targets to move.
+ * Optimizing works in place, so each call gets a fresh copy of the chain;
+ * {@link #copyOnly()} is that copy's share.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChainOptimizerBenchmark {
+    private static final AndroidAnimationBuilder.AnimationStepHook HOOK =
+            new AndroidAnimationBuilder.AnimationStepHook() {
+                @Override
+                public void run(@NonNull View view) { }
+            };
+
+    private final ArrayList<AndroidAnimationBuilder.AnimationStep> chain = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        chain.clear();
+        chain.add(pause(50));
+        chain.add(pause(50));
+        chain.add(animation(0.5f));
+        chain.add(hookOnly());
+        chain.add(animation(1));
+        chain.add(pause(100));
+        chain.add(pause(100));
+        chain.add(pause(100));
+        chain.add(animation(0.5f));
+        chain.add(hookOnly());
+        chain.add(hookOnly());
+        chain.add(new AndroidAnimationBuilder.LoopStep(2, 3));
+        chain.add(animation(0));
+    }
+
+    @Benchmark
+    public ArrayList<AndroidAnimationBuilder.AnimationStep> copyOnly() {
+        return new ArrayList<>(chain);
+    }
+
+    @Benchmark
+    public ArrayList<AndroidAnimationBuilder.AnimationStep> optimize() {
+        ArrayList<AndroidAnimationBuilder.AnimationStep> steps = new ArrayList<>(chain);
+        ChainOptimizer.optimize(steps);
+        return steps;
+    }
+
+    private static AndroidAnimationBuilder.AnimationStep pause(int ms) {
+        AndroidAnimationBuilder.AnimationStep step = new AndroidAnimationBuilder.AnimationStep();
+        step.durationMs = ms;
+        return step;
+    }
+
+    private static AndroidAnimationBuilder.AnimationStep animation(float alpha) {
+        AndroidAnimationBuilder.AnimationStep step = pause(300);
+        step.setAlpha(alpha);
+        return step;
+    }
+
+    private static AndroidAnimationBuilder.AnimationStep hookOnly() {
+        AndroidAnimationBuilder.AnimationStep step = pause(1);
+        step.setPreStep(HOOK);
+        return step;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of the same endless animation on N views: Played as one group
+ * ({@link AnimationTemplate#playOnAll}, one frame callback) or with
+ * {@link AnimationTemplate#playOn} on each view (N frame callbacks). Frames
+ * are delivered by the stand-in {@link Choreographer}, the stand-in
+ * {@link android.os.Build} makes the library take its API 16+ paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GroupBenchmark {
+    private static final long FRAME_NANOS = 16666667L;
+
+    /**
+     * The framework's interpolators only return 0 here, this is the
+     * AccelerateDecelerate formula.
+     */
+    private static final Interpolator ACCELERATE_DECELERATE = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return (float) (Math.cos((input + 1) * Math.PI) / 2.0f) + 0.5f;
+        }
+    };
+
+    @Param({"1", "10", "50"})
+    public int viewCount;
+
+    @Param({"group", "independent"})
+    public String mode;
+
+    private final ArrayList<View> views = new ArrayList<>();
+    private AnimationGroupRun group;
+    private final ArrayList<AnimationRun> runs = new ArrayList<>();
+    private long frameTimeNanos;
+
+    @Setup
+    public void setUp() {
+        AnimationBudget.setEnabled(false);
+        Choreographer.getInstance().clear();
+
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .engine(AndroidAnimationBuilder.Engine.TIMELINE)
+                .setAllowLayerAdjustmentForAnimation(false)
+                .beginLoop()
+                .translateY(-40).alpha(0.5f).ms(400).interpolate(ACCELERATE_DECELERATE)
+                .then().translateY(0).alpha(1).ms(400).interpolate(ACCELERATE_DECELERATE)
+                .endLoopForever()
+                .compile();
+
+        views.clear();
+        for (int i = 0; i < viewCount; i++){
+            views.add(new StandInView());
+        }
+
+        if ("group".equals(mode)){
+            group = template.playOnAll(views, AnimationTemplate.linearStagger(0));
+            // below API 16 or with reduced motion, nothing would be measured
+            if (group == null) throw new IllegalStateException("No group run: Check the stand-in Build");
+        } else {
+            runs.clear();
+            for (View view : views) {
+                runs.add(template.playOn(view));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (group != null) group.cancel();
+        for (AnimationRun run : runs) {
+            run.cancel();
+        }
+        Choreographer.getInstance().clear();
+    }
+
+    @Benchmark
+    public void frame() {
+        frameTimeNanos += FRAME_NANOS;
+        Choreographer.getInstance().doFrame(frameTimeNanos);
+    }
+}
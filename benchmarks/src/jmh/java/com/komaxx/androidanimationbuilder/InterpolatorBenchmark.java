@@ -0,0 +1,141 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.view.animation.Interpolator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Interpolator#getInterpolation} of an expensive curve, and of the same
+ * curve baked with {@link Interpolators#bake}. The framework's interpolators
+ * only return 0 here, so the expensive curve is a cubic bezier solved like a
+ * PathInterpolator does it: Searching the x(t) = input, then evaluating y(t).
+ * The input moves on with every call, so no value can be cached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InterpolatorBenchmark {
+    /**
+     * Not a fraction of 1, so the inputs don't repeat soon.
+     */
+    private static final float INPUT_STEP = 0.0137f;
+
+    private final Interpolator bezier = new CubicBezierInterpolator(0.42f, 0f, 0.58f, 1f);
+    private Interpolator baked;
+    private float input;
+
+    @Setup
+    public void setUp() {
+        baked = Interpolators.bake(bezier);
+        input = 0;
+    }
+
+    @Benchmark
+    public float original() {
+        return bezier.getInterpolation(nextInput());
+    }
+
+    @Benchmark
+    public float baked() {
+        return baked.getInterpolation(nextInput());
+    }
+
+    private float nextInput() {
+        input += INPUT_STEP;
+        if (input > 1) input -= 1;
+        return input;
+    }
+
+    /**
+     * Bezier curve from (0,0) to (1,1) with the two given control points, as
+     * in CSS' cubic-bezier(). Newton iterations first, bisection when they
+     * don't converge.
+     */
+    private static final class CubicBezierInterpolator implements Interpolator {
+        private static final float EPSILON = 1e-6f;
+
+        private final float x1;
+        private final float y1;
+        private final float x2;
+        private final float y2;
+
+        CubicBezierInterpolator(float x1, float y1, float x2, float y2) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+
+        @Override
+        public float getInterpolation(float input) {
+            return bezier(solveT(input), y1, y2);
+        }
+
+        private float solveT(float x) {
+            float t = x;
+            for (int i = 0; i < 8; i++) {
+                float error = bezier(t, x1, x2) - x;
+                if (Math.abs(error) < EPSILON) return t;
+                float slope = slope(t, x1, x2);
+                if (Math.abs(slope) < EPSILON) break;
+                t -= error / slope;
+            }
+
+            float low = 0;
+            float high = 1;
+            t = x;
+            while (low < high) {
+                float value = bezier(t, x1, x2);
+                if (Math.abs(value - x) < EPSILON) return t;
+                if (value < x) low = t; else high = t;
+                float next = (low + high) / 2;
+                if (next == t) return t;
+                t = next;
+            }
+            return t;
+        }
+
+        private static float bezier(float t, float p1, float p2) {
+            float u = 1 - t;
+            return 3 * u * u * t * p1 + 3 * u * t * t * p2 + t * t * t;
+        }
+
+        private static float slope(float t, float p1, float p2) {
+            float u = 1 - t;
+            return 3 * u * u * p1 + 6 * u * t * (p2 - p1) + 3 * t * t * (1 - p2);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A step repeated n times with {@link AndroidAnimationBuilder#repeat(int)}:
+ * Defining, compiling and folding to the end state must not grow with n, as
+ * repetitions are a loop, not copies of the step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RepeatBenchmark {
+    /**
+     * Any hook but CLEAN keeps a template out of the intern cache.
+     */
+    private static final AndroidAnimationBuilder.AnimationStepHook HOOK =
+            new AndroidAnimationBuilder.AnimationStepHook() {
+                @Override
+                public void run(@NonNull View view) { }
+            };
+
+    @Param({"10", "1000", "100000"})
+    public int repeats;
+
+    private AnimationTemplate template;
+    private final ViewState start = ViewState.clean();
+
+    @Setup
+    public void setUp() {
+        AnimationTemplate.clearCache();
+        template = defineChain(HOOK).compile();
+    }
+
+    @Benchmark
+    public AndroidAnimationBuilder define() {
+        return defineChain(HOOK);
+    }
+
+    @Benchmark
+    public AnimationTemplate compile() {
+        return defineChain(HOOK).compile();
+    }
+
+    @Benchmark
+    public ViewState computeEndState() {
+        return template.computeEndState(start);
+    }
+
+    private AndroidAnimationBuilder defineChain(AndroidAnimationBuilder.AnimationStepHook hook) {
+        return new AndroidAnimationBuilder()
+                .alpha(0.5f).ms(100)
+                .then().rotateBy(10).ms(50).repeat(repeats)
+                .then().run(hook).alpha(1).ms(100);
+    }
+}
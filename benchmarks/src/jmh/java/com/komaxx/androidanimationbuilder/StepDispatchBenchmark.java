@@ -0,0 +1,175 @@
+/*
+ MIT license, do whatever
+
+ Copyright (c) 2017 Matthias Schicker
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE.
+ */
+
+
+package com.komaxx.androidanimationbuilder;
+
+import android.animation.Animator;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The library's own cost of moving from one step to the next, per engine:
+ * Finishing a step (targets, hooks) and entering the next one (resolving its
+ * targets, starting its animation). The animation itself is not measured.
+ * <ul>
+ *     <li>animator: One step of an {@link AnimatorRun}. Its host ends each
+ *     animation right away, i.e., two callbacks per step.</li>
+ *     <li>timeline: One frame of an externally driven {@link TimelineRun}
+ *     that lands exactly one step later, i.e., crosses one step boundary.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StepDispatchBenchmark {
+    private static final int STEP_MS = 16;
+
+    /**
+     * The framework's interpolators only return 0 here.
+     */
+    private static final Interpolator LINEAR = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input;
+        }
+    };
+
+    @Param({"animator", "timeline"})
+    public String engine;
+
+    private final StandInView view = new StandInView();
+    private final ImmediateHost host = new ImmediateHost();
+    private AnimationRun run;
+    private FrameDrivenRun timeline;
+    private long frameTimeNanos;
+
+    @Setup
+    public void setUp() {
+        AnimationTemplate template = new AndroidAnimationBuilder()
+                .setAllowLayerAdjustmentForAnimation(false)
+                .beginLoop()
+                .translateX(100).interpolate(LINEAR).ms(STEP_MS)
+                .then().alpha(0.5f).interpolate(LINEAR).ms(STEP_MS)
+                .then().translateX(0).interpolate(LINEAR).ms(STEP_MS)
+                .then().alpha(1).interpolate(LINEAR).ms(STEP_MS)
+                .endLoopForever()
+                .compile();
+
+        if ("animator".equals(engine)){
+            run = new AnimatorRun(template, view, host);
+        } else {
+            timeline = template.createFrameDrivenRun(view, true);
+            run = timeline;
+        }
+        run.start();
+        frameTimeNanos = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        run.cancel();
+    }
+
+    @Benchmark
+    public void nextStep() {
+        if (timeline != null){
+            timeline.onFrame(frameTimeNanos);
+            frameTimeNanos += STEP_MS * 1000000L;
+        } else {
+            host.next();
+            host.next();
+        }
+    }
+
+    /**
+     * Runs posted runnables right away, and ends each animation with the
+     * next callback: The properties jump to their targets.
+     */
+    private static final class ImmediateHost implements AnimatorRun.Host {
+        private Runnable posted;
+
+        private View animatedView;
+        private Animator.AnimatorListener listener;
+        private int animatedMask;
+        private final float[] to = new float[ViewProperties.COUNT];
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void postDelayed(@NonNull View view, @NonNull Runnable action, long delayMs) {
+            posted = action;
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull View view, @NonNull Runnable action) {
+            if (posted == action) posted = null;
+        }
+
+        @Override
+        public void animate(@NonNull View view, int mask, @NonNull float[] to, @NonNull Interpolator interpolator,
+                            long durationMs, @NonNull Animator.AnimatorListener listener) {
+            animatedView = view;
+            this.listener = listener;
+            animatedMask = mask;
+            System.arraycopy(to, 0, this.to, 0, ViewProperties.COUNT);
+        }
+
+        @Override
+        public void stopAnimation(@NonNull View view) {
+            listener = null;
+        }
+
+        void next() {
+            if (listener != null){
+                for (int i = 0; i < ViewProperties.COUNT; i++){
+                    if ((animatedMask & (1 << i)) != 0) ViewProperties.set(animatedView, i, to[i]);
+                }
+                Animator.AnimatorListener ended = listener;
+                listener = null;
+                ended.onAnimationEnd(null);
+            } else if (posted != null){
+                Runnable action = posted;
+                posted = null;
+                action.run();
+            }
+        }
+    }
+}